@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Thrown by {@link WebServiceCommunication#executeBatch(java.util.List, int, boolean)} in fail-fast mode. Cause is
+ * the error of the first failed request.
+ *
+ * @author linsong wang
+ */
+public class BatchException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<BatchResult> results;
+
+    private final transient BatchResult failure;
+
+    public BatchException(List<BatchResult> results, BatchResult failure) {
+        super("batch failed at " + failure, failure.getError());
+        this.results = results;
+        this.failure = failure;
+    }
+
+    /**
+     * @return results of all requests, in input order, requests not issued are marked as skipped
+     */
+    public List<BatchResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return result of the first failed request
+     */
+    public BatchResult getFailure() {
+        return failure;
+    }
+}
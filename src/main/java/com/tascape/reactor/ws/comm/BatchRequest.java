@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import com.tascape.reactor.ws.comm.WebServiceCommunication.HTTP_METHOD;
+import org.json.JSONObject;
+
+/**
+ * One request of a batch, see {@link WebServiceCommunication#executeBatch(java.util.List, int, boolean)}. JSON
+ * variants of method send and accept application/json.
+ *
+ * @author linsong wang
+ */
+public class BatchRequest {
+
+    private final HTTP_METHOD method;
+
+    private final String endpoint;
+
+    private final String params;
+
+    private final String body;
+
+    private final String requestId;
+
+    /**
+     * @param method    HTTP method
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters, can be null
+     * @param body      request body, ignored for GET and HEAD, can be null
+     * @param requestId request id for record response time in millisecond, can be null
+     */
+    public BatchRequest(HTTP_METHOD method, String endpoint, String params, String body, String requestId) {
+        this.method = method;
+        this.endpoint = endpoint;
+        this.params = params;
+        this.body = body;
+        this.requestId = requestId;
+    }
+
+    public BatchRequest(HTTP_METHOD method, String endpoint, String params) {
+        this(method, endpoint, params, null, null);
+    }
+
+    public static BatchRequest get(String endpoint, String params) {
+        return new BatchRequest(HTTP_METHOD.GET, endpoint, params);
+    }
+
+    public static BatchRequest post(String endpoint, String params, String body) {
+        return new BatchRequest(HTTP_METHOD.POST, endpoint, params, body, null);
+    }
+
+    public static BatchRequest postJson(String endpoint, String params, JSONObject json) {
+        return new BatchRequest(HTTP_METHOD.POST_JSONObject, endpoint, params, json.toString(), null);
+    }
+
+    public static BatchRequest putJson(String endpoint, String params, JSONObject json) {
+        return new BatchRequest(HTTP_METHOD.PUT_JSONObject, endpoint, params, json.toString(), null);
+    }
+
+    public static BatchRequest delete(String endpoint, String params) {
+        return new BatchRequest(HTTP_METHOD.DELETE, endpoint, params);
+    }
+
+    public HTTP_METHOD getMethod() {
+        return method;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return true if request and response bodies are JSON
+     */
+    public boolean isJson() {
+        return method.name().endsWith("_JSONObject") || method.name().endsWith("_JSONArray");
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + endpoint + (params == null || params.isEmpty() ? "" : "?" + params);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of one request of a batch, see {@link WebServiceCommunication#executeBatch(java.util.List, int, boolean)}.
+ *
+ * @author linsong wang
+ */
+public class BatchResult {
+
+    private final int index;
+
+    private final BatchRequest request;
+
+    private final int statusCode;
+
+    private final String body;
+
+    private final Throwable error;
+
+    private final long startNanos;
+
+    private final long elapsedNanos;
+
+    private final boolean skipped;
+
+    BatchResult(int index, BatchRequest request, int statusCode, String body, Throwable error, long startNanos,
+        long elapsedNanos, boolean skipped) {
+        this.index = index;
+        this.request = request;
+        this.statusCode = statusCode;
+        this.body = body;
+        this.error = error;
+        this.startNanos = startNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.skipped = skipped;
+    }
+
+    static BatchResult skipped(int index, BatchRequest request) {
+        return new BatchResult(index, request, 0, null, null, 0, 0, true);
+    }
+
+    /**
+     * @return position of the request in the batch
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public BatchRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return HTTP status code, 0 if there is no response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return response body, null if there is no response
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return cause of failure, a {@link WebServiceException} for non-2xx responses, or null on success
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return true if response status is 2xx
+     */
+    public boolean isSuccess() {
+        return !skipped && error == null;
+    }
+
+    /**
+     * @return true if the request was not issued, because an earlier request failed in fail-fast mode
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return time since batch start when the request was issued, in millisecond
+     */
+    public double getStartMillis() {
+        return startNanos / 1e6;
+    }
+
+    /**
+     * @param unit time unit
+     *
+     * @return time from issuing the request to completion, including wait for a pooled connection
+     */
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        if (skipped) {
+            return String.format("#%d %s skipped", index, request);
+        }
+        return String.format("#%d %s -> %s in %.1f ms", index, request,
+            error == null || error instanceof WebServiceException ? Integer.toString(statusCode) : error.toString(),
+            this.getElapsedMillis());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.cache.CacheResponseStatus;
+
+/**
+ * Lock-free counters of the client-side response cache, see {@link WebServiceCommunication#SYSPROP_CACHE}.
+ *
+ * @author linsong wang
+ */
+public class CacheStats {
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder validated = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder moduleResponses = new LongAdder();
+
+    private final LongAdder bytesSaved = new LongAdder();
+
+    void record(CacheResponseStatus status, HttpResponse response) {
+        if (status == null) {
+            return;
+        }
+        switch (status) {
+            case CACHE_HIT:
+                hits.increment();
+                this.saved(response);
+                break;
+            case VALIDATED:
+                validated.increment();
+                this.saved(response);
+                break;
+            case CACHE_MISS:
+                misses.increment();
+                break;
+            default:
+                moduleResponses.increment();
+        }
+    }
+
+    private void saved(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        if (entity != null && entity.getContentLength() > 0) {
+            bytesSaved.add(entity.getContentLength());
+        }
+    }
+
+    /**
+     * @return number of responses served from cache without contacting the server
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of responses served from cache after a conditional request got 304
+     */
+    public long getValidated() {
+        return validated.sum();
+    }
+
+    /**
+     * @return number of responses that came from the server
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of responses generated by the cache itself, such as 504 for only-if-cached requests
+     */
+    public long getModuleResponses() {
+        return moduleResponses.sum();
+    }
+
+    /**
+     * @return response body bytes served from cache instead of downloaded
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * @return hits and validated responses over all cacheable lookups
+     */
+    public double getHitRatio() {
+        long served = this.getHits() + this.getValidated();
+        long total = served + this.getMisses();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    public void reset() {
+        hits.reset();
+        validated.reset();
+        misses.reset();
+        moduleResponses.reset();
+        bytesSaved.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits %d, validated %d, misses %d, module %d, hit ratio %.2f, bytes saved %d",
+            this.getHits(), this.getValidated(), this.getMisses(), this.getModuleResponses(), this.getHitRatio(),
+            this.getBytesSaved());
+    }
+}
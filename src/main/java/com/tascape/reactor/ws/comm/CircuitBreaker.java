@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+/**
+ * Count-based circuit breaker of a {@link ResiliencePolicy}. Outcomes of most recent calls are kept in a ring
+ * buffer; the circuit opens when the failure ratio reaches the threshold, and is half-open after the open period,
+ * when a fixed number of probe calls decide whether it closes or opens again.
+ *
+ * @author linsong wang
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final ResiliencePolicy policy;
+
+    private final boolean[] outcomes;
+
+    private int calls;
+
+    private int next;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private int probes;
+
+    private int probeSuccesses;
+
+    private long openedCount;
+
+    CircuitBreaker(ResiliencePolicy policy) {
+        this.policy = policy;
+        this.outcomes = new boolean[policy.windowSize];
+    }
+
+    /**
+     * Asks for permission of a call.
+     *
+     * @return false if the circuit is open, or all probes of a half-open circuit are in flight
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < policy.openMillis * 1000000) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probes = 0;
+                probeSuccesses = 0;
+            // fall through
+            default:
+                if (probes >= policy.halfOpenCalls) {
+                    return false;
+                }
+                probes++;
+                return true;
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param success false if the call failed
+     */
+    synchronized void record(boolean success) {
+        switch (state) {
+            case CLOSED:
+                if (calls == outcomes.length) {
+                    if (!outcomes[next]) {
+                        failures--;
+                    }
+                } else {
+                    calls++;
+                }
+                outcomes[next] = success;
+                next = (next + 1) % outcomes.length;
+                if (!success) {
+                    failures++;
+                }
+                if (calls >= policy.minimumCalls && failures >= policy.failureRateThreshold * calls) {
+                    this.open();
+                }
+                break;
+            case HALF_OPEN:
+                if (!success) {
+                    this.open();
+                } else if (++probeSuccesses >= policy.halfOpenCalls) {
+                    state = State.CLOSED;
+                    calls = 0;
+                    next = 0;
+                    failures = 0;
+                }
+                break;
+            default:
+                // a call permitted before the circuit opened
+        }
+    }
+
+    /**
+     * Gives back the permit of a call that was cancelled before its outcome is known.
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN && probes > probeSuccesses) {
+            probes--;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        openedCount++;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return failure ratio of calls in current window
+     */
+    public synchronized double getFailureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    /**
+     * @return number of times the circuit opened
+     */
+    public synchronized long getOpenedCount() {
+        return openedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s, failure rate %.2f of %d calls, opened %d times", state, this.getFailureRate(),
+            calls, openedCount);
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateInputStreamFactory;
+import org.apache.http.client.entity.GZIPInputStreamFactory;
+import org.apache.http.client.entity.InputStreamFactory;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.brotli.dec.BrotliInputStream;
+
+/**
+ * Request body compression and response body decoding of {@link WebServiceCommunication}, the same for all
+ * transports. Body sizes, on the wire and decoded, are counted into the {@link RequestRecord} of each request.
+ *
+ * @author linsong wang
+ */
+final class ContentCompression {
+
+    /**
+     * Response decoders by content coding.
+     */
+    static final Map<String, InputStreamFactory> DECODERS = new TreeMap<>();
+
+    static {
+        DECODERS.put("gzip", GZIPInputStreamFactory.getInstance());
+        DECODERS.put("x-gzip", GZIPInputStreamFactory.getInstance());
+        DECODERS.put("deflate", DeflateInputStreamFactory.getInstance());
+        DECODERS.put("br", BrotliInputStream::new);
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private ContentCompression() {
+    }
+
+    /**
+     * Compresses request body if it is larger than threshold, or of unknown length.
+     *
+     * @param request   HTTP request
+     * @param record    record of the request
+     * @param coding    gzip or deflate, null for no compression
+     * @param threshold minimal body size in bytes to compress
+     */
+    static void compress(HttpRequest request, RequestRecord record, String coding, int threshold) {
+        if (!(request instanceof HttpEntityEnclosingRequest)) {
+            return;
+        }
+        HttpEntityEnclosingRequest eer = (HttpEntityEnclosingRequest) request;
+        HttpEntity entity = eer.getEntity();
+        if (entity == null) {
+            return;
+        }
+        long length = entity.getContentLength();
+        if (coding == null || entity.getContentEncoding() != null || (length >= 0 && length < threshold)) {
+            record.setRequestBytes(length, length);
+            return;
+        }
+        eer.setEntity(new CompressingEntity(entity, coding, record));
+    }
+
+    /**
+     * Replaces response entity with one that decodes content, and counts body bytes. Content-Encoding and
+     * Content-Length headers are removed if content is decoded. An empty body is never decoded.
+     *
+     * @param response HTTP response
+     * @param record   record of the request
+     *
+     * @return the same response
+     */
+    static HttpResponse decode(HttpResponse response, RequestRecord record) {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return response;
+        }
+        Header ce = entity.getContentEncoding();
+        if (ce == null) {
+            ce = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        }
+        String coding = ce == null ? "identity" : ce.getValue().trim().toLowerCase(Locale.ROOT);
+        InputStreamFactory decoder = DECODERS.get(coding);
+        if (decoder == null || entity.getContentLength() == 0) {
+            response.setEntity(new DecodingEntity(entity, null, record));
+            return response;
+        }
+        response.setEntity(new DecodingEntity(entity, decoder, record));
+        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+        response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+        response.removeHeaders(HttpHeaders.CONTENT_MD5);
+        return response;
+    }
+
+    /**
+     * Replaces response entity with a buffered and decoded one, so that body bytes are counted before the response
+     * is handed over. Used for responses already buffered in memory by non-blocking transports.
+     *
+     * @param response HTTP response
+     * @param record   record of the request
+     *
+     * @return the same response
+     *
+     * @throws IOException in case the body cannot be decoded
+     */
+    static HttpResponse decodeBuffered(HttpResponse response, RequestRecord record) throws IOException {
+        decode(response, record);
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            response.setEntity(new BufferedHttpEntity(entity));
+        }
+        return response;
+    }
+
+    private static final class DecodingEntity extends HttpEntityWrapper {
+
+        private final InputStreamFactory decoder;
+
+        private final RequestRecord record;
+
+        private InputStream content;
+
+        DecodingEntity(HttpEntity wrapped, InputStreamFactory decoder, RequestRecord record) {
+            super(wrapped);
+            this.decoder = decoder;
+            this.record = record;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            if (content == null) {
+                InputStream wire = new CountingInputStream(wrappedEntity.getContent(), record::addResponseWireBytes);
+                content = new CountingInputStream(decoder == null ? wire : decoder.create(wire),
+                    record::addResponseBytes);
+            }
+            return content;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            InputStream in = this.getContent();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return decoder == null ? super.getContentEncoding() : null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return decoder == null ? super.getContentLength() : -1;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+    }
+
+    private static final class CompressingEntity extends HttpEntityWrapper {
+
+        private final String coding;
+
+        private final RequestRecord record;
+
+        CompressingEntity(HttpEntity wrapped, String coding, RequestRecord record) {
+            super(wrapped);
+            this.coding = coding;
+            this.record = record;
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return new BasicHeader(HttpHeaders.CONTENT_ENCODING, coding);
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return true;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+            this.writeTo(out);
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            long[] wire = new long[1];
+            long[] plain = new long[1];
+            DeflaterOutputStream compressor = "gzip".equals(coding)
+                ? new GZIPOutputStream(new CountingOutputStream(out, n -> wire[0] += n), BUFFER_SIZE)
+                : new DeflaterOutputStream(new CountingOutputStream(out, n -> wire[0] += n), true);
+            wrappedEntity.writeTo(new CountingOutputStream(compressor, n -> plain[0] += n));
+            compressor.finish();
+            compressor.flush();
+            record.setRequestBytes(wire[0], plain[0]);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final LongConsumer counter;
+
+        CountingInputStream(InputStream in, LongConsumer counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counter.accept(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.accept(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            counter.accept(skipped);
+            return skipped;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final LongConsumer counter;
+
+        CountingOutputStream(OutputStream out, LongConsumer counter) {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            counter.accept(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            counter.accept(len);
+        }
+    }
+}
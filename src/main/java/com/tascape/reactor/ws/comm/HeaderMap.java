@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Copy-on-write map of request headers. Reads are lock-free, and the headers are kept as a prebuilt array of
+ * immutable Header objects, so that issuing a request does not allocate anything for headers. Updates copy the map.
+ *
+ * @author linsong wang
+ */
+final class HeaderMap extends AbstractMap<String, String> {
+
+    private static final Header[] NO_HEADERS = new Header[0];
+
+    private volatile Map<String, String> map = Collections.emptyMap();
+
+    private volatile Header[] headers = NO_HEADERS;
+
+    HeaderMap() {
+    }
+
+    HeaderMap(Map<String, String> init) {
+        this.putAll(init);
+    }
+
+    /**
+     * Shares the current snapshot of another header map, nothing is copied until either one is updated.
+     */
+    HeaderMap(HeaderMap defaults) {
+        synchronized (defaults) {
+            this.map = defaults.map;
+            this.headers = defaults.headers;
+        }
+    }
+
+    /**
+     * @return all headers, callers must not modify the array
+     */
+    Header[] toHeaders() {
+        return headers;
+    }
+
+    @Override
+    public synchronized String put(String name, String value) {
+        Map<String, String> m = new LinkedHashMap<>(map);
+        String old = m.put(name, value);
+        this.publish(m);
+        return old;
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends String, ? extends String> values) {
+        Map<String, String> m = new LinkedHashMap<>(map);
+        m.putAll(values);
+        this.publish(m);
+    }
+
+    @Override
+    public synchronized String remove(Object name) {
+        if (!map.containsKey(name)) {
+            return null;
+        }
+        Map<String, String> m = new LinkedHashMap<>(map);
+        String old = m.remove(name);
+        this.publish(m);
+        return old;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.publish(Collections.emptyMap());
+    }
+
+    @Override
+    public String get(Object name) {
+        return map.get(name);
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return map.containsKey(name);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * @return read-only snapshot of entries
+     */
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return map.entrySet();
+    }
+
+    private void publish(Map<String, String> m) {
+        Header[] hs = new Header[m.size()];
+        int i = 0;
+        for (Entry<String, String> e : m.entrySet()) {
+            hs[i++] = new BasicHeader(e.getKey(), e.getValue());
+        }
+        Map<String, String> unmodifiable = Collections.unmodifiableMap(m);
+        this.headers = hs;
+        this.map = unmodifiable;
+    }
+}
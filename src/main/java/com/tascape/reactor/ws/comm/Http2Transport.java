@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.net.ssl.SSLContext;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.cookie.CookieSpec;
+import org.apache.http.cookie.MalformedCookieException;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.impl.cookie.DefaultCookieSpec;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP/2 transport of {@link WebServiceCommunication}, based on JDK HTTP client. All concurrent requests to the same
+ * host are multiplexed over one connection, up to a max number of concurrent streams. Blocking requests wait for a
+ * free stream, non-blocking ones are queued without blocking the caller. Requests and responses are converted from
+ * and to HttpClient types, so that the verb API of {@link WebServiceCommunication} stays the same. Servers without
+ * HTTP/2 support are served with HTTP/1.1.
+ * <p>
+ * Cookies are read from and stored into the cookie store of the calling session, the same as HTTP/1.1 transport,
+ * except cookies set by intermediate redirect responses. Host name verification follows JDK HTTP client, see system
+ * property jdk.internal.httpclient.disableHostnameVerification.
+ *
+ * @author linsong wang
+ */
+public class Http2Transport {
+    private static final Logger LOG = LoggerFactory.getLogger(Http2Transport.class);
+
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+
+    private static final Set<String> RESTRICTED_HEADERS = new HashSet<>(Arrays.asList("connection", "content-length",
+        "date", "expect", "from", "host", "origin", "referer", "upgrade", "via", "warning"));
+
+    private final CookieSpec cookieSpec = new DefaultCookieSpec();
+
+    private final HttpClient client;
+
+    private final String authorization;
+
+    private final Duration timeout;
+
+    private final int maxStreams;
+
+    private final Semaphore streams;
+
+    /**
+     * Non-blocking requests waiting for a free stream, guarded by streams.
+     */
+    private final Queue<CompletableFuture<Void>> waiting = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private final AtomicInteger peakStreams = new AtomicInteger();
+
+    /**
+     * @param sslContext SSL context for https, or null for default
+     * @param username   user name of basic authentication, or null
+     * @param password   password of basic authentication, or null
+     * @param soTimeout  request timeout in millisecond, 0 for no timeout
+     * @param maxStreams max number of concurrent requests, blocking or not
+     */
+    public Http2Transport(SSLContext sslContext, String username, String password, int soTimeout, int maxStreams) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL);
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+        this.client = builder.build();
+        this.authorization = username == null || password == null ? null
+            : "Basic " + Base64.getEncoder().encodeToString((username + ":" + password)
+                .getBytes(StandardCharsets.UTF_8));
+        this.timeout = soTimeout > 0 ? Duration.ofMillis(soTimeout) : null;
+        this.maxStreams = maxStreams;
+        this.streams = new Semaphore(maxStreams);
+    }
+
+    /**
+     * Sends request and waits for response head. Response body is streamed, and the stream is released once
+     * response body is consumed or closed.
+     *
+     * @param request     HTTP request
+     * @param record      request record to mark phases, or null
+     * @param cookieStore cookies to send and to update, or null
+     *
+     * @return response with streaming entity
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public HttpResponse execute(HttpUriRequest request, RequestRecord record, CookieStore cookieStore)
+        throws IOException {
+        java.net.http.HttpRequest req = this.convert(request, cookieStore);
+        try {
+            streams.acquire();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException(ex.getMessage());
+        }
+        this.streamStarted();
+        if (record != null) {
+            record.markSendStart();
+        }
+        java.net.http.HttpResponse<InputStream> res;
+        try {
+            res = client.send(req, marking(BodyHandlers.ofInputStream(), record));
+        } catch (InterruptedException ex) {
+            this.streamFinished();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (IOException | RuntimeException ex) {
+            this.streamFinished();
+            throw ex;
+        }
+        InputStream body = new FilterInputStream(res.body()) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        streamFinished();
+                    }
+                }
+            }
+        };
+        InputStreamEntity entity = new InputStreamEntity(body, res.headers().firstValueAsLong("content-length")
+            .orElse(-1));
+        this.storeCookies(res, cookieStore);
+        return this.convert(res, entity);
+    }
+
+    /**
+     * Sends request without blocking. Response body is buffered.
+     *
+     * @param request     HTTP request
+     * @param record      request record to mark phases, or null
+     * @param cookieStore cookies to send and to update, or null
+     *
+     * @return future of response
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request, RequestRecord record,
+        CookieStore cookieStore) throws IOException {
+        java.net.http.HttpRequest req = this.convert(request, cookieStore);
+        return this.acquireAsync()
+            .thenCompose(permit -> {
+                this.streamStarted();
+                if (record != null) {
+                    record.markSendStart();
+                }
+                return client.sendAsync(req, marking(BodyHandlers.ofByteArray(), record));
+            })
+            .whenComplete((res, ex) -> this.streamFinished())
+            .thenApply(res -> {
+                this.storeCookies(res, cookieStore);
+                return this.convert(res, new ByteArrayEntity(res.body()));
+            });
+    }
+
+    /**
+     * @return number of requests in flight
+     */
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    /**
+     * @return highest number of requests in flight so far
+     */
+    public int getPeakStreams() {
+        return peakStreams.get();
+    }
+
+    /**
+     * @return max number of concurrent requests, blocking or not
+     */
+    public int getMaxStreams() {
+        return maxStreams;
+    }
+
+    /**
+     * @return number of requests waiting for a free stream, blocking or not
+     */
+    public int getPendingStreams() {
+        return streams.getQueueLength() + waiting.size();
+    }
+
+    /**
+     * Takes a stream permit without blocking.
+     *
+     * @return a future completed once a permit is taken
+     */
+    private CompletableFuture<Void> acquireAsync() {
+        synchronized (streams) {
+            if (streams.tryAcquire()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> permit = new CompletableFuture<>();
+            waiting.add(permit);
+            return permit;
+        }
+    }
+
+    private void streamStarted() {
+        int active = activeStreams.incrementAndGet();
+        peakStreams.accumulateAndGet(active, Math::max);
+    }
+
+    /**
+     * Releases the permit of a finished request, handing it to the next non-blocking request waiting, if any.
+     */
+    private void streamFinished() {
+        activeStreams.decrementAndGet();
+        CompletableFuture<Void> next;
+        synchronized (streams) {
+            next = waiting.poll();
+            if (next == null) {
+                streams.release();
+            }
+        }
+        if (next != null) {
+            next.complete(null);
+        }
+    }
+
+    private java.net.http.HttpRequest convert(HttpUriRequest request, CookieStore cookieStore) throws IOException {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(request.getURI());
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        for (Header h : request.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(h.getName().toLowerCase(Locale.ROOT))) {
+                builder.header(h.getName(), h.getValue());
+            }
+        }
+        if (!request.containsHeader("User-Agent")) {
+            builder.header("User-Agent", WebServiceCommunication.USER_AGENT);
+        }
+        if (authorization != null && !request.containsHeader("Authorization")) {
+            builder.header("Authorization", authorization);
+        }
+        if (cookieStore != null && !request.containsHeader("Cookie")) {
+            CookieOrigin origin = origin(request.getURI());
+            Date now = new Date();
+            List<Cookie> cookies = cookieStore.getCookies().stream()
+                .filter(c -> !c.isExpired(now) && cookieSpec.match(c, origin))
+                .collect(Collectors.toList());
+            if (!cookies.isEmpty()) {
+                for (Header h : cookieSpec.formatCookies(cookies)) {
+                    builder.header(h.getName(), h.getValue());
+                }
+            }
+        }
+
+        HttpEntity entity = request instanceof HttpEntityEnclosingRequest
+            ? ((HttpEntityEnclosingRequest) request).getEntity() : null;
+        if (entity == null) {
+            builder.method(request.getMethod(), BodyPublishers.noBody());
+        } else {
+            if (entity.getContentType() != null && !request.containsHeader("Content-Type")) {
+                builder.header("Content-Type", entity.getContentType().getValue());
+            }
+            if (entity.getContentEncoding() != null && !request.containsHeader("Content-Encoding")) {
+                builder.header("Content-Encoding", entity.getContentEncoding().getValue());
+            }
+            builder.method(request.getMethod(), BodyPublishers.ofByteArray(EntityUtils.toByteArray(entity)));
+        }
+        LOG.trace("{} {} over HTTP/2", request.getMethod(), request.getURI());
+        return builder.build();
+    }
+
+    private void storeCookies(java.net.http.HttpResponse<?> res, CookieStore cookieStore) {
+        if (cookieStore == null) {
+            return;
+        }
+        List<String> values = res.headers().allValues("set-cookie");
+        if (values.isEmpty()) {
+            return;
+        }
+        CookieOrigin origin = origin(res.uri());
+        for (String value : values) {
+            try {
+                for (Cookie c : cookieSpec.parse(new BasicHeader("Set-Cookie", value), origin)) {
+                    cookieSpec.validate(c, origin);
+                    cookieStore.addCookie(c);
+                }
+            } catch (MalformedCookieException ex) {
+                LOG.warn("cookie rejected {}, {}", value, ex.getMessage());
+            }
+        }
+    }
+
+    private static CookieOrigin origin(URI uri) {
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() >= 0 ? uri.getPort() : (secure ? 443 : 80);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return new CookieOrigin(uri.getHost(), port, path, secure);
+    }
+
+    private HttpResponse convert(java.net.http.HttpResponse<?> res, AbstractHttpEntity entity) {
+        int code = res.statusCode();
+        ProtocolVersion version = res.version() == HttpClient.Version.HTTP_2 ? HTTP_2
+            : HttpVersion.HTTP_1_1;
+        BasicHttpResponse response = new BasicHttpResponse(new BasicStatusLine(version, code,
+            EnglishReasonPhraseCatalog.INSTANCE.getReason(code, Locale.ENGLISH)));
+        HttpHeaders headers = res.headers();
+        headers.map().forEach((name, values) -> {
+            if (!name.startsWith(":")) {
+                values.forEach(value -> response.addHeader(name, value));
+            }
+        });
+        headers.firstValue("content-type").ifPresent(entity::setContentType);
+        headers.firstValue("content-encoding").ifPresent(entity::setContentEncoding);
+        response.setEntity(entity);
+        return response;
+    }
+
+    private static <T> BodyHandler<T> marking(BodyHandler<T> handler, RequestRecord record) {
+        return info -> {
+            if (record != null) {
+                record.markHeadReceived();
+            }
+            return handler.apply(info);
+        };
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import org.apache.http.HttpEntity;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Reads and writes JSON bodies of {@link WebServiceCommunication}, see
+ * {@link WebServiceCommunication#SYSPROP_JSON_CODEC}. Implementations must be thread-safe.
+ *
+ * @author linsong wang
+ */
+public interface JsonCodec {
+
+    /**
+     * Parses a JSON object.
+     *
+     * @param reader response body
+     *
+     * @return JSON object
+     *
+     * @throws IOException in case of IO issue
+     */
+    JSONObject readObject(Reader reader) throws IOException;
+
+    /**
+     * Parses a JSON array.
+     *
+     * @param reader response body
+     *
+     * @return JSON array
+     *
+     * @throws IOException in case of IO issue
+     */
+    JSONArray readArray(Reader reader) throws IOException;
+
+    /**
+     * Serializes a JSON object or array.
+     *
+     * @param json   JSONObject or JSONArray
+     * @param writer request body
+     *
+     * @throws IOException in case of IO issue
+     */
+    void write(Object json, Writer writer) throws IOException;
+
+    /**
+     * Creates request body of a JSON object or array. Default is an entity that serializes straight into the request
+     * stream when sent.
+     *
+     * @param json JSONObject or JSONArray
+     *
+     * @return request entity with content type application/json
+     *
+     * @throws IOException in case of IO issue
+     */
+    default HttpEntity newEntity(Object json) throws IOException {
+        return new JsonEntity(this, json);
+    }
+}
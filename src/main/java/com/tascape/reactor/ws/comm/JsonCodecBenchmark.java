@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares JSON codecs on a generated payload: time and heap allocation per parse and per write, with the payload read
+ * from and written to byte streams, as over HTTP.
+ *
+ * @author linsong wang
+ */
+public class JsonCodecBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(JsonCodecBenchmark.class);
+
+    private static final JsonCodec[] CODECS = {OrgJsonCodec.INSTANCE, StreamingJsonCodec.INSTANCE};
+
+    /**
+     * @param args [number of items in payload] [iterations]
+     *
+     * @throws Exception in case of any issue
+     */
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        JSONObject payload = payload(items);
+        byte[] bytes = payload.toString().getBytes(StandardCharsets.UTF_8);
+        LOG.info("payload {} items, {} bytes, {} iterations", items, bytes.length, iterations);
+
+        for (JsonCodec codec : CODECS) {
+            if (codec.readObject(reader(bytes)).getJSONArray("items").length() != items) {
+                throw new IllegalStateException(codec.getClass().getSimpleName() + " parsed a different payload");
+            }
+        }
+        LOG.info(String.format("%-20s %12s %14s %12s %14s", "codec", "read ms", "read KB alloc", "write ms",
+            "write KB alloc"));
+        for (int round = 0; round < 2; round++) {
+            for (JsonCodec codec : CODECS) {
+                long[] read = measure(iterations, () -> codec.readObject(reader(bytes)));
+                long[] write = measure(iterations, () -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+                    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                    codec.write(payload, writer);
+                    writer.flush();
+                });
+                if (round > 0) {
+                    LOG.info(String.format("%-20s %12.2f %14d %12.2f %14d", codec.getClass().getSimpleName(),
+                        read[0] / 1e6, read[1] / 1024, write[0] / 1e6, write[1] / 1024));
+                }
+            }
+        }
+    }
+
+    private static JSONObject payload(int items) {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < items; i++) {
+            array.put(new JSONObject()
+                .put("id", i)
+                .put("name", "item \"" + i + "\" \u00e9\u4e2d")
+                .put("price", i * 1.25)
+                .put("active", i % 2 == 0)
+                .put("tags", new JSONArray().put("a").put("b").put(i))
+                .put("owner", new JSONObject().put("id", (long) i << 32).put("email", JSONObject.NULL)));
+        }
+        return new JSONObject().put("total", items).put("items", array);
+    }
+
+    private static Reader reader(byte[] bytes) {
+        return new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return average nanoseconds and allocated bytes per operation, allocated bytes is -1 if not supported by JVM
+     */
+    private static long[] measure(int iterations, Operation op) throws IOException {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        boolean alloc = mx instanceof com.sun.management.ThreadMXBean;
+        long bytes = alloc ? ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(tid) : 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        long nanos = System.nanoTime() - start;
+        if (alloc) {
+            bytes = ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(tid) - bytes;
+        }
+        return new long[]{nanos / iterations, alloc ? bytes / iterations : -1};
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run() throws IOException;
+    }
+}
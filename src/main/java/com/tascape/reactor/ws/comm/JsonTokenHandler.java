@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+
+/**
+ * Receives JSON tokens one at a time while response body is being read.
+ *
+ * @author linsong wang
+ */
+@FunctionalInterface
+public interface JsonTokenHandler {
+
+    /**
+     * Called for each token.
+     *
+     * @param token token type
+     * @param text  field name, string or number literal; null for other tokens
+     *
+     * @return false to stop reading the rest of the response
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    boolean onToken(JsonTokenReader.Token token, String text) throws IOException;
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import org.json.JSONException;
+
+/**
+ * A minimal pull parser that reads JSON tokens from a character stream, with a fixed size buffer, so that large
+ * payloads can be processed without building the whole document in memory. Content is checked against JSON grammar
+ * as it is read. A stream of several JSON values, one after another, is read as such.
+ *
+ * @author linsong wang
+ */
+public class JsonTokenReader {
+
+    public enum Token {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL,
+    }
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private static final int BEFORE_VALUE = 0;
+
+    private static final int BEFORE_VALUE_OR_END = 1;
+
+    private static final int BEFORE_NAME = 2;
+
+    private static final int BEFORE_NAME_OR_END = 3;
+
+    private static final int BEFORE_COLON = 4;
+
+    private static final int AFTER_VALUE = 5;
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[8192];
+
+    private int pos;
+
+    private int limit;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private boolean[] objects = new boolean[32];
+
+    private int depth;
+
+    private int state = BEFORE_VALUE;
+
+    private String currentText;
+
+    public JsonTokenReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads next token.
+     *
+     * @return next token, or null at end of stream
+     *
+     * @throws IOException   in case of IO issue
+     * @throws JSONException in case of malformed content
+     */
+    public Token next() throws IOException {
+        currentText = null;
+        int c = this.nextClean();
+        if (state == AFTER_VALUE) {
+            if (depth == 0) {
+                state = BEFORE_VALUE;
+            } else if (c == ',') {
+                state = this.inObject() ? BEFORE_NAME : BEFORE_VALUE;
+                c = this.nextClean();
+            } else if (c != (this.inObject() ? '}' : ']')) {
+                throw this.unexpected(c);
+            }
+        } else if (state == BEFORE_COLON) {
+            if (c != ':') {
+                throw this.unexpected(c);
+            }
+            state = BEFORE_VALUE;
+            c = this.nextClean();
+        }
+        switch (c) {
+            case -1:
+                if (depth > 0 || state != BEFORE_VALUE) {
+                    throw new JSONException("Unterminated JSON content");
+                }
+                return null;
+            case '{':
+                this.checkValue(c);
+                this.push(true);
+                state = BEFORE_NAME_OR_END;
+                return Token.START_OBJECT;
+            case '}':
+                if (!this.inObject() || (state != AFTER_VALUE && state != BEFORE_NAME_OR_END)) {
+                    throw this.unexpected(c);
+                }
+                depth--;
+                state = AFTER_VALUE;
+                return Token.END_OBJECT;
+            case '[':
+                this.checkValue(c);
+                this.push(false);
+                state = BEFORE_VALUE_OR_END;
+                return Token.START_ARRAY;
+            case ']':
+                if (depth == 0 || this.inObject() || (state != AFTER_VALUE && state != BEFORE_VALUE_OR_END)) {
+                    throw this.unexpected(c);
+                }
+                depth--;
+                state = AFTER_VALUE;
+                return Token.END_ARRAY;
+            case '"':
+                if (state == BEFORE_NAME || state == BEFORE_NAME_OR_END) {
+                    currentText = this.readString();
+                    state = BEFORE_COLON;
+                    return Token.FIELD_NAME;
+                }
+                this.checkValue(c);
+                currentText = this.readString();
+                state = AFTER_VALUE;
+                return Token.STRING;
+            case 't':
+                this.checkValue(c);
+                this.expect("rue");
+                state = AFTER_VALUE;
+                return Token.TRUE;
+            case 'f':
+                this.checkValue(c);
+                this.expect("alse");
+                state = AFTER_VALUE;
+                return Token.FALSE;
+            case 'n':
+                this.checkValue(c);
+                this.expect("ull");
+                state = AFTER_VALUE;
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    this.checkValue(c);
+                    currentText = this.readNumber((char) c);
+                    if (!NUMBER.matcher(currentText).matches()) {
+                        throw new JSONException("Invalid JSON number " + currentText);
+                    }
+                    state = AFTER_VALUE;
+                    return Token.NUMBER;
+                }
+                throw this.unexpected(c);
+        }
+    }
+
+    /**
+     * Gets text of current token.
+     *
+     * @return field name, string or number literal; null for other tokens
+     */
+    public String getText() {
+        return currentText;
+    }
+
+    /**
+     * Reads all tokens and passes them to handler.
+     *
+     * @param handler token handler
+     *
+     * @return true if all tokens are read, false if the handler stopped reading
+     *
+     * @throws IOException   in case of IO issue, or thrown by handler
+     * @throws JSONException in case of malformed content
+     */
+    public boolean read(JsonTokenHandler handler) throws IOException {
+        for (Token t = this.next(); t != null; t = this.next()) {
+            if (!handler.onToken(t, currentText)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean inObject() {
+        return depth > 0 && objects[depth - 1];
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        objects[depth++] = object;
+    }
+
+    private void checkValue(int c) {
+        if (state != BEFORE_VALUE && state != BEFORE_VALUE_OR_END) {
+            throw this.unexpected(c);
+        }
+    }
+
+    private JSONException unexpected(int c) {
+        if (c == -1) {
+            return new JSONException("Unterminated JSON content");
+        }
+        return new JSONException("Unexpected character '" + (char) c + "' at depth " + depth);
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+
+    private int nextClean() throws IOException {
+        int c = this.read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = this.read();
+        }
+        return c;
+    }
+
+    private void expect(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (this.read() != rest.charAt(i)) {
+                throw new JSONException("Invalid JSON literal");
+            }
+        }
+    }
+
+    private String readNumber(char first) throws IOException {
+        text.setLength(0);
+        text.append(first);
+        while (true) {
+            if (pos == limit && this.fill() <= 0) {
+                break;
+            }
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append(c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return text.toString();
+    }
+
+    private int fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        pos = 0;
+        if (limit < 0) {
+            limit = 0;
+            return -1;
+        }
+        return limit;
+    }
+
+    private String readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"' && buffer[pos] != '\\' && buffer[pos] >= 0x20) {
+                pos++;
+            }
+            text.append(buffer, start, pos - start);
+            int c = this.read();
+            switch (c) {
+                case -1:
+                    throw new JSONException("Unterminated JSON string");
+                case '"':
+                    return text.toString();
+                case '\\':
+                    c = this.read();
+                    switch (c) {
+                        case '"':
+                        case '\\':
+                        case '/':
+                            text.append((char) c);
+                            break;
+                        case 'b':
+                            text.append('\b');
+                            break;
+                        case 'f':
+                            text.append('\f');
+                            break;
+                        case 'n':
+                            text.append('\n');
+                            break;
+                        case 'r':
+                            text.append('\r');
+                            break;
+                        case 't':
+                            text.append('\t');
+                            break;
+                        case 'u':
+                            int code = 0;
+                            for (int i = 0; i < 4; i++) {
+                                int h = this.read();
+                                int d = h < 0x80 ? Character.digit(h, 16) : -1;
+                                if (d < 0) {
+                                    throw new JSONException("Invalid JSON unicode escape");
+                                }
+                                code = (code << 4) + d;
+                            }
+                            text.append((char) code);
+                            break;
+                        case -1:
+                            throw new JSONException("Unterminated JSON string");
+                        default:
+                            throw new JSONException("Invalid JSON escape \\" + (char) c);
+                    }
+                    break;
+                default:
+                    if (c < 0x20) {
+                        throw new JSONException("Unescaped control character in JSON string");
+                    }
+                    text.append((char) c);
+            }
+        }
+    }
+}
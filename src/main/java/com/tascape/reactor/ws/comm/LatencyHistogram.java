@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets, similar to HdrHistogram. Values are kept with about two
+ * significant digits (relative error under 1/32), from 1 nanosecond up to about 36 minutes. Memory footprint is fixed,
+ * no matter how many values are recorded, about 9 KB per stripe. Counts can be striped across a few arrays to reduce
+ * contention between recording threads.
+ *
+ * @author linsong wang
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private static final int HALF_COUNT = SUB_COUNT >> 1;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKET_COUNT = SUB_COUNT + (MAX_EXPONENT - SUB_BITS + 1) * HALF_COUNT;
+
+    private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+    private final AtomicLongArray[] counts;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Creates a histogram striped by the number of available processors, up to 8 stripes.
+     */
+    public LatencyHistogram() {
+        this(STRIPES);
+    }
+
+    /**
+     * @param stripes number of count arrays, rounded down to a power of 2, 1 for the smallest footprint
+     */
+    public LatencyHistogram(int stripes) {
+        counts = new AtomicLongArray[Integer.highestOneBit(Math.max(1, stripes))];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param nanos latency in nanosecond, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long v = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts[(int) Thread.currentThread().getId() & (counts.length - 1)].incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        min.accumulateAndGet(v, Math::min);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of recorded values in nanosecond
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return minimal recorded value in nanosecond, 0 if nothing recorded
+     */
+    public long getMin() {
+        long m = min.get();
+        return m == Long.MAX_VALUE ? 0 : m;
+    }
+
+    /**
+     * @return maximal recorded value in nanosecond
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of recorded values in nanosecond
+     */
+    public double getMean() {
+        long c = count.sum();
+        return c == 0 ? 0 : (double) sum.sum() / c;
+    }
+
+    /**
+     * Gets the value at given percentile.
+     *
+     * @param percentile between 0 and 100
+     *
+     * @return value in nanosecond, highest equivalent value of the bucket, capped by max recorded value
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] merged = this.merge();
+        long total = 0;
+        for (long c : merged) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += merged[i];
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Gets the value at given percentile.
+     *
+     * @param percentile between 0 and 100
+     * @param unit       time unit of returned value
+     *
+     * @return value at percentile in given unit
+     */
+    public long getValueAtPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(this.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently with reset may be partially kept.
+     */
+    public void reset() {
+        for (AtomicLongArray stripe : counts) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                stripe.set(i, 0);
+            }
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d min=%d mean=%.0f p50=%d p90=%d p99=%d max=%d (ns)", this.getCount(),
+            this.getMin(), this.getMean(), this.getValueAtPercentile(50), this.getValueAtPercentile(90),
+            this.getValueAtPercentile(99), this.getMax());
+    }
+
+    private long[] merge() {
+        long[] merged = new long[BUCKET_COUNT];
+        for (AtomicLongArray stripe : counts) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                merged[i] += stripe.get(i);
+            }
+        }
+        return merged;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+        int sub = (int) (value >>> shift);
+        return SUB_COUNT + (shift - 1) * HALF_COUNT + (sub - HALF_COUNT);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_COUNT) / HALF_COUNT + 1;
+        long sub = (index - SUB_COUNT) % HALF_COUNT + HALF_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The default JSON codec, same as before codecs are pluggable: response body is read into a string and parsed by
+ * org.json, request body is serialized into a string.
+ *
+ * @author linsong wang
+ */
+public class OrgJsonCodec implements JsonCodec {
+    private static final Logger LOG = LoggerFactory.getLogger(OrgJsonCodec.class);
+
+    public static final OrgJsonCodec INSTANCE = new OrgJsonCodec();
+
+    @Override
+    public JSONObject readObject(Reader reader) throws IOException {
+        String res = toString(reader);
+        try {
+            return new JSONObject(res);
+        } catch (JSONException ex) {
+            LOG.warn(res);
+            throw ex;
+        }
+    }
+
+    @Override
+    public JSONArray readArray(Reader reader) throws IOException {
+        String res = toString(reader);
+        try {
+            return new JSONArray(res);
+        } catch (JSONException ex) {
+            LOG.warn(res);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void write(Object json, Writer writer) throws IOException {
+        writer.write(json.toString());
+    }
+
+    @Override
+    public HttpEntity newEntity(Object json) throws IOException {
+        StringEntity entity = new StringEntity(json.toString());
+        entity.setContentType(ContentType.APPLICATION_JSON.getMimeType());
+        return entity;
+    }
+
+    private static String toString(Reader reader) throws IOException {
+        StringWriter sw = new StringWriter();
+        char[] buffer = new char[8192];
+        for (int n = reader.read(buffer); n >= 0; n = reader.read(buffer)) {
+            sw.write(buffer, 0, n);
+        }
+        return sw.toString();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Snapshot of connection pool statistics, total and per route.
+ *
+ * @author linsong wang
+ */
+public class PoolMetrics {
+
+    private final PoolStats total;
+
+    private final Map<String, PoolStats> routes;
+
+    /**
+     * Takes a snapshot of a pool.
+     *
+     * @param pool connection pool, blocking or non-blocking
+     *
+     * @return pool metrics
+     */
+    public static PoolMetrics of(ConnPoolControl<HttpRoute> pool) {
+        Map<String, PoolStats> routes = new TreeMap<>();
+        if (pool instanceof PoolingHttpClientConnectionManager) {
+            ((PoolingHttpClientConnectionManager) pool).getRoutes()
+                .forEach(route -> routes.put(route.toString(), pool.getStats(route)));
+        } else if (pool instanceof PoolingNHttpClientConnectionManager) {
+            ((PoolingNHttpClientConnectionManager) pool).getRoutes()
+                .forEach(route -> routes.put(route.toString(), pool.getStats(route)));
+        }
+        return new PoolMetrics(pool.getTotalStats(), routes);
+    }
+
+    public PoolMetrics(PoolStats total, Map<String, PoolStats> routes) {
+        this.total = total;
+        this.routes = Collections.unmodifiableMap(routes);
+    }
+
+    /**
+     * @return number of connections in use
+     */
+    public int getLeased() {
+        return total.getLeased();
+    }
+
+    /**
+     * @return number of requests waiting for a connection, non-zero means the pool is saturated
+     */
+    public int getPending() {
+        return total.getPending();
+    }
+
+    /**
+     * @return number of idle connections
+     */
+    public int getAvailable() {
+        return total.getAvailable();
+    }
+
+    /**
+     * @return max number of connections
+     */
+    public int getMax() {
+        return total.getMax();
+    }
+
+    /**
+     * @return statistics per route, keyed by route
+     */
+    public Map<String, PoolStats> getRoutes() {
+        return routes;
+    }
+
+    @Override
+    public String toString() {
+        return "total " + total + " routes " + routes;
+    }
+}
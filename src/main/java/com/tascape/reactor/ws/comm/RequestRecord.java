@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Timing of one request, broken into phases, all measured with {@link System#nanoTime()}. Phases are collected by
+ * connection manager socket factories and the request executor of {@link WebServiceCommunication}. With redirects,
+ * connect and exchange phases are of the last hop.
+ *
+ * @author linsong wang
+ */
+public class RequestRecord {
+
+    /**
+     * Context attribute name of the record of current request.
+     */
+    public static final String CONTEXT_ATTRIBUTE = "reactor.ws.request-record";
+
+    public enum Phase {
+        /**
+         * wait for a pooled connection
+         */
+        LEASE,
+        /**
+         * TCP connect, only for new connections
+         */
+        CONNECT,
+        /**
+         * TLS handshake, only for new https connections
+         */
+        TLS,
+        /**
+         * from sending request to receiving response head
+         */
+        TTFB,
+        /**
+         * response body transfer and processing
+         */
+        BODY,
+        /**
+         * whole request
+         */
+        TOTAL,
+    }
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final long start = System.nanoTime();
+
+    private long connectStart = UNSET;
+
+    private long tlsStart = UNSET;
+
+    private long tlsEnd = UNSET;
+
+    private long sendStart = UNSET;
+
+    private long headReceived = UNSET;
+
+    private long end = UNSET;
+
+    private volatile long requestWireBytes = -1;
+
+    private volatile long requestBytes = -1;
+
+    private volatile long responseWireBytes;
+
+    private volatile long responseBytes;
+
+    /**
+     * Gets the record of current request from context.
+     *
+     * @param context HTTP context
+     *
+     * @return request record, or null if request is not timed
+     */
+    public static RequestRecord of(HttpContext context) {
+        return context == null ? null : (RequestRecord) context.getAttribute(CONTEXT_ATTRIBUTE);
+    }
+
+    /**
+     * Gets duration of a phase.
+     *
+     * @param phase request phase
+     *
+     * @return duration in nanosecond, or -1 if the phase did not happen or was not measured
+     */
+    public long getNanos(Phase phase) {
+        switch (phase) {
+            case LEASE:
+                long leased = connectStart != UNSET ? connectStart : sendStart;
+                return leased == UNSET ? -1 : leased - start;
+            case CONNECT:
+                long connected = tlsStart != UNSET ? tlsStart : sendStart;
+                return connectStart == UNSET || connected == UNSET ? -1 : connected - connectStart;
+            case TLS:
+                return tlsStart == UNSET || tlsEnd == UNSET ? -1 : tlsEnd - tlsStart;
+            case TTFB:
+                return sendStart == UNSET || headReceived == UNSET ? -1 : headReceived - sendStart;
+            case BODY:
+                return headReceived == UNSET || end == UNSET ? -1 : end - headReceived;
+            case TOTAL:
+                return end == UNSET ? -1 : end - start;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return true if request was sent over a pooled connection, false if a new connection was opened or unknown
+     */
+    public boolean isConnectionReused() {
+        return sendStart != UNSET && connectStart == UNSET;
+    }
+
+    /**
+     * @return request body size in bytes as sent, compressed if request compression applies, -1 if unknown
+     */
+    public long getRequestWireBytes() {
+        return requestWireBytes;
+    }
+
+    /**
+     * @return request body size in bytes before compression, -1 if unknown
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return response body bytes read off the wire, compressed if the server compressed them
+     */
+    public long getResponseWireBytes() {
+        return responseWireBytes;
+    }
+
+    /**
+     * @return response body bytes after decoding, as read by the caller
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    void setRequestBytes(long wire, long uncompressed) {
+        requestWireBytes = wire;
+        requestBytes = uncompressed;
+    }
+
+    // response body is read by one thread at a time
+    void addResponseWireBytes(long n) {
+        responseWireBytes += n;
+    }
+
+    void addResponseBytes(long n) {
+        responseBytes += n;
+    }
+
+    void markConnectStart() {
+        connectStart = System.nanoTime();
+        tlsStart = UNSET;
+        tlsEnd = UNSET;
+    }
+
+    void markTlsStart() {
+        tlsStart = System.nanoTime();
+    }
+
+    void markTlsEnd() {
+        tlsEnd = System.nanoTime();
+    }
+
+    void markSendStart() {
+        sendStart = System.nanoTime();
+    }
+
+    void markHeadReceived() {
+        headReceived = System.nanoTime();
+    }
+
+    void markEnd() {
+        end = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase p : Phase.values()) {
+            sb.append(p.name().toLowerCase()).append('=').append(this.getNanos(p)).append(' ');
+        }
+        return sb.append("(ns) request=").append(requestWireBytes).append('/').append(requestBytes)
+            .append(" response=").append(responseWireBytes).append('/').append(responseBytes).append(" (wire/bytes)")
+            .toString();
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a {@link ResiliencePolicy} to requests of matching endpoints. Each attempt is a copy of the original
+ * request, so that headers and body compression are applied afresh. Backoff and hedging delays are scheduled, never
+ * slept, on the asynchronous path.
+ *
+ * @author linsong wang
+ */
+final class Resilience {
+    private static final Logger LOG = LoggerFactory.getLogger(Resilience.class);
+
+    private static final ScheduledExecutorService SCHEDULER;
+
+    static {
+        ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "ws-resilience-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        stpe.setRemoveOnCancelPolicy(true);
+        SCHEDULER = stpe;
+    }
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS",
+        "TRACE", "PUT", "DELETE"));
+
+    @FunctionalInterface
+    interface Attempt<T> {
+        T execute(HttpUriRequest request) throws IOException;
+    }
+
+    /**
+     * Wraps an error of the response consumer of a synchronous attempt. Once the consumer has seen the response, the
+     * request is never sent again, so that the consumer does not see the body twice.
+     */
+    static final class ConsumerException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ConsumerException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private final String pattern;
+
+    private final ResiliencePolicy policy;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final ResilienceMetrics metrics;
+
+    private final ResponseTimeRecorder responseTime;
+
+    Resilience(String pattern, ResiliencePolicy policy, ResponseTimeRecorder responseTime) {
+        this.pattern = pattern;
+        this.policy = policy;
+        this.circuitBreaker = policy.isCircuitBreakerEnabled() ? new CircuitBreaker(policy) : null;
+        this.metrics = new ResilienceMetrics(this.circuitBreaker);
+        this.responseTime = responseTime;
+    }
+
+    ResilienceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param request HTTP request
+     *
+     * @return true if the request is sent with hedging, which needs the asynchronous path
+     */
+    boolean isHedged(HttpUriRequest request) {
+        return policy.isHedgingEnabled() && isRepeatable(request);
+    }
+
+    /**
+     * Executes a request synchronously, with retries and circuit breaker. Connect errors and retryable status codes
+     * are retried, errors wrapped in {@link ConsumerException} are not.
+     *
+     * @param <T>     type of the result
+     * @param request original HTTP request
+     * @param attempt sends one attempt and consumes its response
+     *
+     * @return result of the successful attempt
+     *
+     * @throws IOException error of the last attempt, or {@link CircuitOpenException}
+     */
+    <T> T execute(HttpUriRequest request, Attempt<T> attempt) throws IOException {
+        metrics.calls.increment();
+        boolean retryable = policy.isRetryEnabled() && isRepeatable(request);
+        for (int n = 1;; n++) {
+            this.acquire();
+            metrics.attempts.increment();
+            IOException error;
+            try {
+                T result = attempt.execute(retryable ? copy(request) : request);
+                this.record(true);
+                return result;
+            } catch (ConsumerException ex) {
+                this.record(true);
+                throw (IOException) ex.getCause();
+            } catch (IOException ex) {
+                this.record(!this.isFailure(ex));
+                error = ex;
+            } catch (RuntimeException | Error ex) {
+                this.record(true);
+                throw ex;
+            }
+            if (!retryable || !this.isRetryable(error)) {
+                throw error;
+            }
+            if (n >= policy.maxAttempts) {
+                metrics.retriesExhausted.increment();
+                throw error;
+            }
+            long delay = policy.backoffMillis(n);
+            metrics.retries.increment();
+            LOG.debug("retry {} {} in {} ms, {}", request.getMethod(), request.getURI(), delay, error.toString());
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("retry is interrupted");
+            }
+        }
+    }
+
+    /**
+     * Executes a request without blocking, with retries, hedging and circuit breaker.
+     *
+     * @param request original HTTP request
+     * @param attempt sends one attempt
+     *
+     * @return future of the response of the winning attempt, or of the last attempt
+     */
+    CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request, Attempt<CompletableFuture<HttpResponse>>
+        attempt) {
+        metrics.calls.increment();
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        this.attemptAsync(request, attempt, isRepeatable(request), 1, result);
+        return result;
+    }
+
+    private void attemptAsync(HttpUriRequest request, Attempt<CompletableFuture<HttpResponse>> attempt,
+        boolean repeatable, int n, CompletableFuture<HttpResponse> result) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            this.acquire();
+        } catch (CircuitOpenException ex) {
+            result.completeExceptionally(ex);
+            return;
+        }
+        CompletableFuture<HttpResponse> future = repeatable && policy.isHedgingEnabled()
+            ? this.hedge(request, attempt)
+            : this.send(repeatable ? copy(request) : request, attempt);
+        future.whenComplete((response, ex) -> {
+            Throwable cause = unwrap(ex);
+            if (cause instanceof CancellationException) {
+                this.release();
+            } else {
+                this.record(cause == null ? !policy.isFailureStatus(status(response)) : !this.isFailure(cause));
+            }
+            boolean retry = cause == null ? policy.isRetryStatus(status(response)) : this.isRetryable(cause);
+            if (retry && repeatable && policy.isRetryEnabled()) {
+                if (n < policy.maxAttempts && !result.isDone()) {
+                    if (response != null) {
+                        EntityUtils.consumeQuietly(response.getEntity());
+                    }
+                    long delay = policy.backoffMillis(n);
+                    metrics.retries.increment();
+                    LOG.debug("retry {} {} in {} ms, {}", request.getMethod(), request.getURI(), delay,
+                        cause == null ? response.getStatusLine() : cause.toString());
+                    SCHEDULER.schedule(() -> this.attemptAsync(request, attempt, true, n + 1, result), delay,
+                        TimeUnit.MILLISECONDS);
+                    return;
+                }
+                metrics.retriesExhausted.increment();
+            }
+            if (cause != null) {
+                result.completeExceptionally(cause);
+            } else if (!result.complete(response)) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        });
+    }
+
+    /**
+     * Sends a copy of the request, and another one after the hedging delay, if the first one is still in flight. The
+     * first successful response wins, and the other request is cancelled. If the first one fails before the delay, no
+     * hedged request is sent, and the attempt fails. Both requests share one circuit breaker permit, and the outcome
+     * of the attempt as a whole is recorded.
+     */
+    private CompletableFuture<HttpResponse> hedge(HttpUriRequest request,
+        Attempt<CompletableFuture<HttpResponse>> attempt) {
+        CompletableFuture<HttpResponse> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture<HttpResponse> primary = this.send(copy(request), attempt);
+        long delay = this.hedgeDelayMillis(request);
+        ScheduledFuture<?> timer = SCHEDULER.schedule(() -> {
+            if (winner.isDone()
+                || (circuitBreaker != null && circuitBreaker.getState() != CircuitBreaker.State.CLOSED)) {
+                return;
+            }
+            pending.incrementAndGet();
+            metrics.hedges.increment();
+            LOG.debug("hedge {} {} after {} ms", request.getMethod(), request.getURI(), delay);
+            CompletableFuture<HttpResponse> hedged = this.send(copy(request), attempt);
+            hedged.whenComplete((response, ex) -> {
+                if (this.settle(winner, pending, response, ex)) {
+                    metrics.hedgeWins.increment();
+                }
+            });
+            winner.whenComplete((response, ex) -> hedged.cancel(false));
+        }, delay, TimeUnit.MILLISECONDS);
+        primary.whenComplete((response, ex) -> this.settle(winner, pending, response, ex));
+        winner.whenComplete((response, ex) -> {
+            timer.cancel(false);
+            primary.cancel(false);
+        });
+        return winner;
+    }
+
+    /**
+     * @return true if this attempt won
+     */
+    private boolean settle(CompletableFuture<HttpResponse> winner, AtomicInteger pending, HttpResponse response,
+        Throwable ex) {
+        if (ex == null && !policy.isFailureStatus(status(response))) {
+            if (winner.complete(response)) {
+                return true;
+            }
+        } else if (pending.decrementAndGet() == 0) {
+            return ex == null ? winner.complete(response) : winner.completeExceptionally(unwrap(ex));
+        }
+        if (response != null) {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+        return false;
+    }
+
+    private CompletableFuture<HttpResponse> send(HttpUriRequest request,
+        Attempt<CompletableFuture<HttpResponse>> attempt) {
+        metrics.attempts.increment();
+        try {
+            return attempt.execute(request);
+        } catch (IOException | RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    private long hedgeDelayMillis(HttpUriRequest request) {
+        if (policy.hedgePercentile > 0) {
+            LatencyHistogram h = responseTime.getHistogram(request.getMethod(), request.getURI().getPath());
+            if (h != null && h.getCount() >= policy.hedgeMinSamples) {
+                return Math.max(1, h.getValueAtPercentile(policy.hedgePercentile, TimeUnit.MILLISECONDS));
+            }
+        }
+        return policy.hedgeDelayMillis;
+    }
+
+    private void acquire() throws CircuitOpenException {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            metrics.rejected.increment();
+            throw new CircuitOpenException("circuit of " + pattern + " is open");
+        }
+    }
+
+    private void record(boolean success) {
+        if (circuitBreaker != null) {
+            circuitBreaker.record(success);
+        }
+    }
+
+    private void release() {
+        if (circuitBreaker != null) {
+            circuitBreaker.release();
+        }
+    }
+
+    private boolean isFailure(Throwable error) {
+        if (error instanceof WebServiceException) {
+            return policy.isFailureStatus(((WebServiceException) error).getHttpCode());
+        }
+        return error instanceof IOException;
+    }
+
+    private boolean isRetryable(Throwable error) {
+        if (error instanceof WebServiceException) {
+            return policy.isRetryStatus(((WebServiceException) error).getHttpCode());
+        }
+        return error instanceof IOException
+            && !(error instanceof CircuitOpenException)
+            && !(error instanceof UnknownHostException)
+            && !(error instanceof SSLException)
+            && error.getClass() != InterruptedIOException.class;
+    }
+
+    private static boolean isRepeatable(HttpUriRequest request) {
+        if (!(request instanceof HttpRequestBase) || !IDEMPOTENT_METHODS.contains(request.getMethod())) {
+            return false;
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    private static HttpUriRequest copy(HttpUriRequest request) {
+        try {
+            return (HttpUriRequest) ((HttpRequestBase) request).clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException("cannot copy request " + request.getRequestLine(), ex);
+        }
+    }
+
+    private static int status(HttpResponse response) {
+        return response.getStatusLine().getStatusCode();
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        if ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+            return ex.getCause();
+        }
+        return ex;
+    }
+
+    @Override
+    public String toString() {
+        return pattern + " " + policy;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters of one {@link ResiliencePolicy}, see
+ * {@link WebServiceCommunication#getResilienceMetrics()}.
+ *
+ * @author linsong wang
+ */
+public class ResilienceMetrics {
+
+    final LongAdder calls = new LongAdder();
+
+    final LongAdder attempts = new LongAdder();
+
+    final LongAdder retries = new LongAdder();
+
+    final LongAdder retriesExhausted = new LongAdder();
+
+    final LongAdder hedges = new LongAdder();
+
+    final LongAdder hedgeWins = new LongAdder();
+
+    final LongAdder rejected = new LongAdder();
+
+    private final CircuitBreaker circuitBreaker;
+
+    ResilienceMetrics(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * @return number of calls, each with one or more attempts
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return number of requests sent, including retries and hedged requests
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * @return number of retries
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return number of calls that still failed after the last attempt
+     */
+    public long getRetriesExhausted() {
+        return retriesExhausted.sum();
+    }
+
+    /**
+     * @return number of hedged requests sent
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return number of hedged requests that completed before the original request
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * @return number of attempts rejected by the open circuit
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the circuit breaker, or null if not enabled
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void reset() {
+        calls.reset();
+        attempts.reset();
+        retries.reset();
+        retriesExhausted.reset();
+        hedges.reset();
+        hedgeWins.reset();
+        rejected.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("calls %d, attempts %d, retries %d, exhausted %d, hedges %d, hedge wins %d, rejected %d%s",
+            this.getCalls(), this.getAttempts(), this.getRetries(), this.getRetriesExhausted(), this.getHedges(),
+            this.getHedgeWins(), this.getRejected(), circuitBreaker == null ? "" : ", circuit " + circuitBreaker);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Declarative resilience policy of requests to matching endpoints, see
+ * {@link WebServiceCommunication#setResiliencePolicy(String, ResiliencePolicy)}. All parts are off by default.
+ * <pre>
+ * new ResiliencePolicy()
+ *     .withRetry(3, 100, 2000)
+ *     .withHedging(95, 50)
+ *     .withCircuitBreaker(0.5, 20, 100, 30000);
+ * </pre>
+ * Retries and hedged requests are only issued for idempotent methods (GET, HEAD, OPTIONS, TRACE, PUT and DELETE)
+ * with a repeatable body. A request is never retried once its response handler has been called. Hedged responses are
+ * buffered, so streaming calls, such as getStream, getReader and getJsonTokens, are retried but never hedged.
+ *
+ * @author linsong wang
+ */
+public class ResiliencePolicy {
+
+    int maxAttempts = 1;
+
+    long baseDelayMillis = 100;
+
+    long maxDelayMillis = 5000;
+
+    double jitter = 0.5;
+
+    private int[] retryStatuses = {429, 502, 503, 504};
+
+    double hedgePercentile;
+
+    long hedgeDelayMillis;
+
+    int hedgeMinSamples = 100;
+
+    double failureRateThreshold;
+
+    int minimumCalls = 20;
+
+    int windowSize = 100;
+
+    long openMillis = 30000;
+
+    int halfOpenCalls = 5;
+
+    /**
+     * Retries failed attempts with exponential backoff, the n-th retry waits for baseDelayMillis * 2^(n-1), capped at
+     * maxDelayMillis, and shortened by a random jitter. I/O errors and responses of retryable status codes are retried.
+     *
+     * @param maxAttempts     max number of attempts, including the first one
+     * @param baseDelayMillis delay before the first retry in millisecond
+     * @param maxDelayMillis  max delay before any retry in millisecond
+     *
+     * @return this policy
+     */
+    public ResiliencePolicy withRetry(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("invalid retry " + maxAttempts + "/" + baseDelayMillis + "/"
+                + maxDelayMillis);
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    /**
+     * @param jitter fraction of each backoff delay that is randomized, between 0 (fixed delays) and 1 (full jitter),
+     *               default 0.5
+     *
+     * @return this policy
+     */
+    public ResiliencePolicy withJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * @param statuses HTTP status codes to retry, default 429, 502, 503 and 504
+     *
+     * @return this policy
+     */
+    public ResiliencePolicy withRetryOn(int... statuses) {
+        this.retryStatuses = statuses.clone();
+        Arrays.sort(this.retryStatuses);
+        return this;
+    }
+
+    /**
+     * Sends a second, hedged, request if the first one has not completed after a fixed delay. The first successful
+     * response wins, and the other request is cancelled.
+     *
+     * @param delayMillis delay before the hedged request in millisecond
+     *
+     * @return this policy
+     */
+    public ResiliencePolicy withHedging(long delayMillis) {
+        return this.withHedging(0, delayMillis);
+    }
+
+    /**
+     * Sends a second, hedged, request if the first one has not completed after the given percentile of recorded
+     * response time of the same method and endpoint. The first successful response wins, and the other request is
+     * cancelled.
+     *
+     * @param percentile     percentile of response time, such as 95
+     * @param fallbackMillis delay in millisecond while fewer than 100 response times are recorded
+     *
+     * @return this policy
+     */
+    public ResiliencePolicy withHedging(double percentile, long fallbackMillis) {
+        if (percentile < 0 || percentile > 100 || fallbackMillis <= 0) {
+            throw new IllegalArgumentException("invalid hedging " + percentile + "/" + fallbackMillis);
+        }
+        this.hedgePercentile = percentile;
+        this.hedgeDelayMillis = fallbackMillis;
+        return this;
+    }
+
+    /**
+     * Opens the circuit when the ratio of failed calls, in a window of most recent calls, reaches a threshold. Calls
+     * fail fast with {@link CircuitOpenException} while the circuit is open. After a while, a few probe calls are let
+     * through, and the circuit closes if all of them succeed. I/O errors, 5xx and retryable status codes are failures.
+     *
+     * @param failureRate  failure ratio to open the circuit, between 0 and 1
+     * @param minimumCalls min number of calls in window before the ratio is evaluated
+     * @param windowSize   number of most recent calls to evaluate
+     * @param openMillis   time the circuit stays open before probing in millisecond
+     *
+     * @return this policy
+     */
+    public ResiliencePolicy withCircuitBreaker(double failureRate, int minimumCalls, int windowSize,
+        long openMillis) {
+        if (failureRate <= 0 || failureRate > 1 || windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("invalid circuit breaker " + failureRate + "/" + minimumCalls + "/"
+                + windowSize);
+        }
+        this.failureRateThreshold = failureRate;
+        this.minimumCalls = minimumCalls;
+        this.windowSize = windowSize;
+        this.openMillis = openMillis;
+        return this;
+    }
+
+    /**
+     * @param calls number of probe calls while the circuit is half-open, default 5
+     *
+     * @return this policy
+     */
+    public ResiliencePolicy withHalfOpenCalls(int calls) {
+        if (calls < 1) {
+            throw new IllegalArgumentException("half-open calls must be positive");
+        }
+        this.halfOpenCalls = calls;
+        return this;
+    }
+
+    boolean isRetryEnabled() {
+        return maxAttempts > 1;
+    }
+
+    boolean isHedgingEnabled() {
+        return hedgeDelayMillis > 0;
+    }
+
+    boolean isCircuitBreakerEnabled() {
+        return failureRateThreshold > 0;
+    }
+
+    boolean isRetryStatus(int status) {
+        return Arrays.binarySearch(retryStatuses, status) >= 0;
+    }
+
+    boolean isFailureStatus(int status) {
+        return status >= 500 || this.isRetryStatus(status);
+    }
+
+    /**
+     * @param retry 1 for the first retry
+     *
+     * @return backoff delay in millisecond
+     */
+    long backoffMillis(int retry) {
+        long delay = baseDelayMillis << Math.min(retry - 1, 30);
+        if (delay > maxDelayMillis || delay < 0) {
+            delay = maxDelayMillis;
+        }
+        return delay - (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("retry %d/%d/%d jitter %.2f on %s, hedging p%.0f/%d, circuit breaker %.2f/%d/%d/%d",
+            maxAttempts, baseDelayMillis, maxDelayMillis, jitter, Arrays.toString(retryStatuses), hedgePercentile,
+            hedgeDelayMillis, failureRateThreshold, minimumCalls, windowSize, openMillis);
+    }
+}
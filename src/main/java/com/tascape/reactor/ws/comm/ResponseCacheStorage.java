@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.Resource;
+
+/**
+ * Bounded HTTP cache storage with LRU and TTL eviction. Entries are kept in memory, response bodies are kept where the
+ * resource factory of the cache puts them, on heap, or in files for a disk tier. Expired entries are dropped when
+ * looked up. Like {@link org.apache.http.impl.client.cache.ManagedHttpCacheStorage}, resources of evicted and replaced
+ * entries are only disposed, which deletes their files, after the entries are garbage collected, so that a response
+ * still being read from a cached resource is never cut off.
+ *
+ * @author linsong wang
+ */
+public class ResponseCacheStorage implements HttpCacheStorage {
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, HttpCacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReferenceQueue<HttpCacheEntry> morgue = new ReferenceQueue<>();
+
+    private final Set<ResourceReference> references = new HashSet<>();
+
+    private final Map<Resource, Integer> referenceCounts = new IdentityHashMap<>();
+
+    /**
+     * @param maxEntries maximal number of entries, least recently used ones are evicted first
+     * @param ttlMillis  maximal age of an entry in millisecond since its response is received, no matter what
+     *                   Cache-Control says, 0 for no limit
+     */
+    public ResponseCacheStorage(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public synchronized void putEntry(String key, HttpCacheEntry entry) throws IOException {
+        this.cleanResources();
+        if (entries.put(key, entry) != entry) {
+            this.track(entry);
+        }
+        Iterator<HttpCacheEntry> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Override
+    public synchronized HttpCacheEntry getEntry(String key) throws IOException {
+        HttpCacheEntry entry = entries.get(key);
+        if (entry != null && ttlMillis > 0 && entry.getResponseDate() != null
+            && System.currentTimeMillis() - entry.getResponseDate().getTime() > ttlMillis) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    @Override
+    public synchronized void removeEntry(String key) throws IOException {
+        entries.remove(key);
+    }
+
+    @Override
+    public synchronized void updateEntry(String key, HttpCacheUpdateCallback callback) throws IOException {
+        HttpCacheEntry updated = callback.update(this.getEntry(key));
+        if (updated == null) {
+            this.removeEntry(key);
+        } else {
+            this.putEntry(key, updated);
+        }
+    }
+
+    /**
+     * @return number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all entries. Their resources are disposed once no longer in use.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        this.cleanResources();
+    }
+
+    /**
+     * Disposes resources of entries that have been garbage collected.
+     */
+    public synchronized void cleanResources() {
+        for (ResourceReference ref = (ResourceReference) morgue.poll(); ref != null;
+            ref = (ResourceReference) morgue.poll()) {
+            references.remove(ref);
+            if (referenceCounts.merge(ref.resource, -1, Integer::sum) == 0) {
+                referenceCounts.remove(ref.resource);
+                ref.resource.dispose();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries, and disposes all resources at once, call only when the cache is no longer used.
+     */
+    public synchronized void shutdown() {
+        entries.clear();
+        referenceCounts.keySet().forEach(Resource::dispose);
+        referenceCounts.clear();
+        references.clear();
+        while (morgue.poll() != null) {
+            // already disposed
+        }
+    }
+
+    private void track(HttpCacheEntry entry) {
+        Resource resource = entry.getResource();
+        if (resource != null) {
+            references.add(new ResourceReference(entry, morgue));
+            referenceCounts.merge(resource, 1, Integer::sum);
+        }
+    }
+
+    private static final class ResourceReference extends PhantomReference<HttpCacheEntry> {
+
+        private final Resource resource;
+
+        ResourceReference(HttpCacheEntry entry, ReferenceQueue<HttpCacheEntry> queue) {
+            super(entry, queue);
+            this.resource = entry.getResource();
+        }
+    }
+}
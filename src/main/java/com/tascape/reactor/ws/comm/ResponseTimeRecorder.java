@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe and bounded recorder of response time. Every finished request is recorded into a latency histogram of
+ * its method and endpoint, and its phases into global phase histograms. Method/endpoint histograms are not striped, to
+ * keep their footprint small (about 9 KB each), while the shared phase histograms are. Requests with a request id are
+ * also kept in a bounded LRU map, for per-request lookup.
+ *
+ * @author linsong wang
+ */
+public class ResponseTimeRecorder {
+
+    private static final String OVERFLOW_ENDPOINT = "*";
+
+    private final int maxEndpoints;
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private final Map<RequestRecord.Phase, LatencyHistogram> phases = new EnumMap<>(RequestRecord.Phase.class);
+
+    private final Map<String, RequestRecord> requests;
+
+    /**
+     * @param requestCapacity max number of request ids to keep, 0 to disable per-request lookup
+     * @param maxEndpoints    max number of method/endpoint histograms, requests to other endpoints are recorded under
+     *                        endpoint "*"
+     */
+    public ResponseTimeRecorder(int requestCapacity, int maxEndpoints) {
+        this.maxEndpoints = maxEndpoints;
+        for (RequestRecord.Phase p : RequestRecord.Phase.values()) {
+            phases.put(p, new LatencyHistogram());
+        }
+        if (requestCapacity > 0) {
+            this.requests = Collections.synchronizedMap(new LinkedHashMap<String, RequestRecord>(128, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RequestRecord> eldest) {
+                    return this.size() > requestCapacity;
+                }
+            });
+        } else {
+            this.requests = null;
+        }
+    }
+
+    /**
+     * Records timing of one finished request. A request without end mark is not recorded.
+     *
+     * @param method    HTTP method
+     * @param endpoint  endpoint of request url
+     * @param requestId request id, or null
+     * @param record    request timing
+     */
+    public void record(String method, String endpoint, String requestId, RequestRecord record) {
+        long total = record.getNanos(RequestRecord.Phase.TOTAL);
+        if (total < 0) {
+            return;
+        }
+        this.getOrCreate(method, endpoint).record(total);
+        phases.forEach((phase, histogram) -> {
+            long nanos = record.getNanos(phase);
+            if (nanos >= 0) {
+                histogram.record(nanos);
+            }
+        });
+        if (requests != null && requestId != null && !requestId.isEmpty()) {
+            requests.put(requestId, record);
+        }
+    }
+
+    /**
+     * Gets response time of a request.
+     *
+     * @param requestId request id
+     *
+     * @return time in millisecond, or null if not recorded or already evicted
+     */
+    public Long getResponseTime(String requestId) {
+        if (requests == null) {
+            return null;
+        }
+        RequestRecord record = requests.get(requestId);
+        return record == null ? null : TimeUnit.NANOSECONDS.toMillis(record.getNanos(RequestRecord.Phase.TOTAL));
+    }
+
+    /**
+     * Gets phase timing of a request.
+     *
+     * @param requestId request id
+     *
+     * @return request record, or null if not recorded or already evicted
+     */
+    public RequestRecord getRequestRecord(String requestId) {
+        return requests == null ? null : requests.get(requestId);
+    }
+
+    public void remove(String requestId) {
+        if (requests != null) {
+            requests.remove(requestId);
+        }
+    }
+
+    /**
+     * Gets the histogram of a method and endpoint.
+     *
+     * @param method   HTTP method
+     * @param endpoint endpoint of request url
+     *
+     * @return histogram, or null if no request recorded
+     */
+    public LatencyHistogram getHistogram(String method, String endpoint) {
+        return histograms.get(method + " " + endpoint);
+    }
+
+    /**
+     * Gets all histograms.
+     *
+     * @return unmodifiable view of histograms, keyed by "METHOD endpoint"
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Gets the histogram of a request phase, across all methods and endpoints.
+     *
+     * @param phase request phase
+     *
+     * @return phase histogram
+     */
+    public LatencyHistogram getPhaseHistogram(RequestRecord.Phase phase) {
+        return phases.get(phase);
+    }
+
+    public void reset() {
+        histograms.clear();
+        phases.values().forEach(LatencyHistogram::reset);
+        if (requests != null) {
+            requests.clear();
+        }
+    }
+
+    private LatencyHistogram getOrCreate(String method, String endpoint) {
+        String key = method + " " + endpoint;
+        LatencyHistogram h = histograms.get(key);
+        if (h != null) {
+            return h;
+        }
+        if (histograms.size() >= maxEndpoints) {
+            key = method + " " + OVERFLOW_ENDPOINT;
+        }
+        return histograms.computeIfAbsent(key, k -> new LatencyHistogram(1));
+    }
+}
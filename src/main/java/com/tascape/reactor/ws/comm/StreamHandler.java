@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes response body as a stream. The connection is released back to pool once the handler returns.
+ *
+ * @author linsong wang
+ * @param <T> type of the result
+ */
+@FunctionalInterface
+public interface StreamHandler<T> {
+
+    /**
+     * Reads response content.
+     *
+     * @param content response body stream, never null
+     *
+     * @return any result
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    T handle(InputStream content) throws IOException;
+}
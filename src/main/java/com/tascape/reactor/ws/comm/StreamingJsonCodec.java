@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import com.tascape.reactor.ws.comm.JsonTokenReader.Token;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A JSON codec that builds org.json trees straight from the response stream with {@link JsonTokenReader}, and writes
+ * them straight into the request stream, without an intermediate string of the whole body. Numbers are converted the
+ * same way as org.json does. Malformed content, duplicate keys, and content after the JSON value are rejected with
+ * {@link JSONException}, same as org.json does. Nesting depth is not limited by thread stack size.
+ *
+ * @author linsong wang
+ */
+public class StreamingJsonCodec implements JsonCodec {
+
+    public static final StreamingJsonCodec INSTANCE = new StreamingJsonCodec();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public JSONObject readObject(Reader reader) throws IOException {
+        Object json = read(new JsonTokenReader(reader));
+        if (json instanceof JSONObject) {
+            return (JSONObject) json;
+        }
+        throw new JSONException("JSON object expected, got " + (json == null ? "nothing" : json.getClass().getName()));
+    }
+
+    @Override
+    public JSONArray readArray(Reader reader) throws IOException {
+        Object json = read(new JsonTokenReader(reader));
+        if (json instanceof JSONArray) {
+            return (JSONArray) json;
+        }
+        throw new JSONException("JSON array expected, got " + (json == null ? "nothing" : json.getClass().getName()));
+    }
+
+    @Override
+    public void write(Object json, Writer writer) throws IOException {
+        // org.json writes char by char, which allocates on each call to an OutputStreamWriter
+        Writer w = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, BUFFER_SIZE);
+        if (json instanceof JSONObject) {
+            ((JSONObject) json).write(w);
+        } else if (json instanceof JSONArray) {
+            ((JSONArray) json).write(w);
+        } else {
+            w.write(JSONObject.valueToString(json));
+        }
+        w.flush();
+    }
+
+    /**
+     * Reads the only JSON value of the stream.
+     *
+     * @param jtr token reader
+     *
+     * @return JSONObject, JSONArray, or a scalar value as org.json represents it, null if stream is empty
+     *
+     * @throws IOException   in case of IO issue
+     * @throws JSONException in case of malformed content, duplicate keys, or content after the value
+     */
+    static Object read(JsonTokenReader jtr) throws IOException {
+        Object value = readValue(jtr);
+        if (value != null && jtr.next() != null) {
+            throw new JSONException("Unexpected content after JSON value");
+        }
+        return value;
+    }
+
+    private static Object readValue(JsonTokenReader jtr) throws IOException {
+        Deque<Object> containers = new ArrayDeque<>();
+        Deque<String> names = new ArrayDeque<>();
+        String name = null;
+        for (Token t = jtr.next(); t != null; t = jtr.next()) {
+            Object value;
+            switch (t) {
+                case FIELD_NAME:
+                    name = jtr.getText();
+                    continue;
+                case START_OBJECT:
+                case START_ARRAY:
+                    containers.push(t == Token.START_OBJECT ? new JSONObject() : new JSONArray());
+                    if (name != null) {
+                        names.push(name);
+                        name = null;
+                    } else if (containers.size() > 1) {
+                        names.push("");
+                    }
+                    continue;
+                case END_OBJECT:
+                case END_ARRAY:
+                    value = containers.pop();
+                    if (containers.isEmpty()) {
+                        return value;
+                    }
+                    name = names.pop();
+                    break;
+                case STRING:
+                    value = jtr.getText();
+                    break;
+                case NUMBER:
+                    value = JSONObject.stringToValue(jtr.getText());
+                    break;
+                case TRUE:
+                    value = Boolean.TRUE;
+                    break;
+                case FALSE:
+                    value = Boolean.FALSE;
+                    break;
+                default:
+                    value = JSONObject.NULL;
+            }
+            if (containers.isEmpty()) {
+                return value;
+            }
+            Object parent = containers.peek();
+            if (parent instanceof JSONObject) {
+                ((JSONObject) parent).putOnce(name, value);
+            } else {
+                ((JSONArray) parent).put(value);
+            }
+            name = null;
+        }
+        return null;
+    }
+}
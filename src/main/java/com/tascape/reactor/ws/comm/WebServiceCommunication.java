@@ -18,29 +18,55 @@ package com.tascape.reactor.ws.comm;
 
 import com.tascape.reactor.SystemConfiguration;
 import com.tascape.reactor.comm.EntityCommunication;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
+import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
 import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
@@ -53,20 +79,23 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.cache.HttpCacheContext;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
-import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
@@ -82,18 +111,32 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.client.LaxRedirectStrategy;
-import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.client.cache.CachingHttpClients;
+import org.apache.http.impl.client.cache.FileResourceFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.protocol.UriPatternMatcher;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.apache.http.ssl.TrustStrategy;
 import org.apache.http.util.EntityUtils;
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -140,6 +183,109 @@ public class WebServiceCommunication extends EntityCommunication {
      */
     public static final String SYSPROP_SO_TIMEOUT = "reactor.comm.ws.SO_TIMEOUT";
 
+    /**
+     * Max number of pooled connections, default to 200
+     */
+    public static final String SYSPROP_MAX_TOTAL = "reactor.comm.ws.MAX_TOTAL";
+
+    /**
+     * Max number of pooled connections of the web service host, default to 200
+     */
+    public static final String SYSPROP_MAX_PER_HOST = "reactor.comm.ws.MAX_PER_HOST";
+
+    /**
+     * Max number of pooled connections of other routes, such as redirect targets, default to 20
+     */
+    public static final String SYSPROP_MAX_PER_ROUTE = "reactor.comm.ws.MAX_PER_ROUTE";
+
+    /**
+     * Inactivity in millisecond after which pooled connections are validated before reuse, default to 5000
+     */
+    public static final String SYSPROP_VALIDATE_AFTER_INACTIVITY = "reactor.comm.ws.VALIDATE_AFTER_INACTIVITY";
+
+    /**
+     * Interval in millisecond of checking expired and idle connections, default to 5000
+     */
+    public static final String SYSPROP_IDLE_CHECK_INTERVAL = "reactor.comm.ws.IDLE_CHECK_INTERVAL";
+
+    /**
+     * Idle time in millisecond after which pooled connections are closed, default to 10000
+     */
+    public static final String SYSPROP_IDLE_TIMEOUT = "reactor.comm.ws.IDLE_TIMEOUT";
+
+    /**
+     * Set to true to send requests over HTTP/2, multiplexed on one connection per host, default to false. Responses
+     * are not cached over HTTP/2, see {@link #SYSPROP_CACHE}.
+     */
+    public static final String SYSPROP_HTTP2 = "reactor.comm.ws.HTTP2";
+
+    /**
+     * Max number of concurrent requests over HTTP/2, blocking or not, default to 100. Further requests wait for a free
+     * stream, non-blocking ones without blocking the caller.
+     */
+    public static final String SYSPROP_HTTP2_MAX_STREAMS = "reactor.comm.ws.HTTP2_MAX_STREAMS";
+
+    /**
+     * Max number of request ids kept for response time lookup, least recently used are evicted, default to 10000
+     */
+    public static final String SYSPROP_RESPONSE_TIME_CAPACITY = "reactor.comm.ws.RESPONSE_TIME_CAPACITY";
+
+    /**
+     * Max number of method/endpoint response time histograms, about 9 KB each, default to 200. Requests to other
+     * endpoints are recorded under endpoint "*".
+     */
+    public static final String SYSPROP_RESPONSE_TIME_ENDPOINTS = "reactor.comm.ws.RESPONSE_TIME_ENDPOINTS";
+
+    /**
+     * Set to true to cache responses of blocking requests per HTTP caching rules, and revalidate stale ones with
+     * If-None-Match/If-Modified-Since, default to false. The cache is private to the communication, sessions do not
+     * use it, since their cookies and headers may identify other users. The cache is not used, and a warning is
+     * logged, if {@link #SYSPROP_HTTP2} is also set to true.
+     */
+    public static final String SYSPROP_CACHE = "reactor.comm.ws.CACHE";
+
+    /**
+     * JSON codec of request and response bodies, org.json (default), streaming, or class name of a {@link JsonCodec}
+     * with a public no-arg constructor
+     */
+    public static final String SYSPROP_JSON_CODEC = "reactor.comm.ws.JSON_CODEC";
+
+    /**
+     * Accept-Encoding of requests, responses are decoded accordingly, gzip, deflate and br are supported, default to
+     * "gzip, deflate, br", set to identity to disable
+     */
+    public static final String SYSPROP_ACCEPT_ENCODING = "reactor.comm.ws.ACCEPT_ENCODING";
+
+    /**
+     * Content coding to compress request bodies with, gzip or deflate, default to none
+     */
+    public static final String SYSPROP_REQUEST_COMPRESSION = "reactor.comm.ws.REQUEST_COMPRESSION";
+
+    /**
+     * Min request body size in bytes to compress, bodies of unknown size are always compressed, default to 1024
+     */
+    public static final String SYSPROP_REQUEST_COMPRESSION_THRESHOLD = "reactor.comm.ws.REQUEST_COMPRESSION_THRESHOLD";
+
+    /**
+     * Max number of cached responses, least recently used are evicted, default to 1000
+     */
+    public static final String SYSPROP_CACHE_MAX_ENTRIES = "reactor.comm.ws.CACHE_MAX_ENTRIES";
+
+    /**
+     * Max response body size in bytes to cache, default to 1048576
+     */
+    public static final String SYSPROP_CACHE_MAX_OBJECT_SIZE = "reactor.comm.ws.CACHE_MAX_OBJECT_SIZE";
+
+    /**
+     * Max time in millisecond to keep a cached response, no matter what Cache-Control says, default to 0 for no limit
+     */
+    public static final String SYSPROP_CACHE_TTL = "reactor.comm.ws.CACHE_TTL";
+
+    /**
+     * Directory to keep cached response bodies in, instead of heap, default to none
+     */
+    public static final String SYSPROP_CACHE_DIR = "reactor.comm.ws.CACHE_DIR";
+
     /**
      * Web service user agent string
      */
@@ -151,8 +297,15 @@ public class WebServiceCommunication extends EntityCommunication {
         GET, GET_JSONObject, GET_JSONArray, POST, POST_JSONObject, PUT, PUT_JSONObject, DELETE, DELETE_JSONObject, HEAD,
     }
 
+    private static final Header JSON_CONTENT_TYPE = new BasicHeader(HTTP.CONTENT_TYPE,
+        ContentType.APPLICATION_JSON.getMimeType());
+
     private static String cookieSpec = CookieSpecs.DEFAULT;
 
+    private static final Map<String, CloseableHttpClient> URI_CLIENTS = new ConcurrentHashMap<>();
+
+    private final WebServiceCommunication owner;
+
     private final HttpHost httpHost;
 
     private final String baseUri;
@@ -169,15 +322,47 @@ public class WebServiceCommunication extends EntityCommunication {
 
     private AuthCache authCache;
 
+    private BasicScheme preemptiveScheme;
+
     private final CookieStore cookieStore = new BasicCookieStore();
 
+    private SSLContext sslContext;
+
     private CloseableHttpClient client;
 
+    private CloseableHttpClient sessionClient;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private PoolingNHttpClientConnectionManager asyncConnectionManager;
+
+    private CloseableHttpAsyncClient asyncClient;
+
+    private Http2Transport http2;
+
+    private ResponseCacheStorage cacheStorage;
+
+    private final CacheStats cacheStats = new CacheStats();
+
+    private volatile JsonCodec jsonCodec;
+
+    private final String acceptEncoding;
+
+    private final String requestCompression;
+
+    private final int requestCompressionThreshold;
+
     private IdleConnectionMonitorThread cmt;
 
-    private final Map<String, String> headers = new HashMap<>();
+    private IdleConnectionMonitorThread asyncCmt;
+
+    private final HeaderMap headers;
+
+    private final ResponseTimeRecorder responseTime;
 
-    private final Map<String, Long> responseTime = new HashMap<>();
+    private final UriPatternMatcher<Resilience> resilience;
+
+    private final Map<String, Resilience> resiliencePolicies;
 
     public static void setCookieSpec(String aCookieSpec) {
         cookieSpec = aCookieSpec;
@@ -193,11 +378,32 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public static String getUri(String uri) throws IOException {
-        CloseableHttpClient c = newHttpClient(new URL(uri));
+        CloseableHttpClient c = getUriClient(new URL(uri));
+        HttpGet get = new HttpGet(uri);
+        LOG.debug("GET {}", uri);
+        try (CloseableHttpResponse res = c.execute(get, HttpClientContext.create())) {
+            return checkResponse(res);
+        }
+    }
+
+    /**
+     * Gets the response body of specified uri as a stream, and releases connection once handler returns.
+     *
+     * @param <T>     type of the result
+     * @param uri     http/https uri
+     * @param handler response body handler
+     *
+     * @return result of the handler
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public static <T> T getUri(String uri, StreamHandler<T> handler) throws IOException {
+        CloseableHttpClient c = getUriClient(new URL(uri));
         HttpGet get = new HttpGet(uri);
         LOG.debug("GET {}", uri);
-        CloseableHttpResponse res = c.execute(get, HttpClientContext.create());
-        return checkResponse(res);
+        try (CloseableHttpResponse res = c.execute(get, HttpClientContext.create())) {
+            return consume(res, response -> handler.handle(contentOf(response.getEntity())));
+        }
     }
 
     /**
@@ -210,12 +416,13 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public static Header[] headUri(String uri) throws IOException {
-        CloseableHttpClient c = newHttpClient(new URL(uri));
+        CloseableHttpClient c = getUriClient(new URL(uri));
         HttpHead head = new HttpHead(uri);
         LOG.debug("HEAD {}", uri);
-        CloseableHttpResponse res = c.execute(head, HttpClientContext.create());
-        checkResponse(res);
-        return res.getAllHeaders();
+        try (CloseableHttpResponse res = c.execute(head, HttpClientContext.create())) {
+            checkResponse(res);
+            return res.getAllHeaders();
+        }
     }
 
     /**
@@ -232,6 +439,24 @@ public class WebServiceCommunication extends EntityCommunication {
         return Stream.of(headUri(uri)).filter(h -> h.getName().equals(name)).findFirst().get().getValue();
     }
 
+    /**
+     * Closes all shared clients used by {@link #getUri(java.lang.String)} and {@link #headUri(java.lang.String)}.
+     * Clients are created again on next call. Shared clients keep no cookies, so calls never see each other's
+     * cookies.
+     */
+    public static void closeUriClients() {
+        URI_CLIENTS.keySet().forEach(key -> {
+            CloseableHttpClient c = URI_CLIENTS.remove(key);
+            if (c != null) {
+                try {
+                    c.close();
+                } catch (IOException ex) {
+                    LOG.warn("Cannot close client of {}", key, ex);
+                }
+            }
+        });
+    }
+
     /**
      * Needs system properties.
      * <ul>
@@ -324,13 +549,7 @@ public class WebServiceCommunication extends EntityCommunication {
      * @param port https for *443, http for others
      */
     public WebServiceCommunication(String host, int port) {
-        if (port % 1000 == 443) {
-            this.baseUri = "https://" + host + (port == 443 ? "" : ":" + port);
-            this.httpHost = new HttpHost(host, port, "https");
-        } else {
-            this.baseUri = "http://" + host + (port == 80 ? "" : ":" + port);
-            this.httpHost = new HttpHost(host, port, "http");
-        }
+        this(host, port, port % 1000 == 443);
     }
 
     /**
@@ -348,6 +567,75 @@ public class WebServiceCommunication extends EntityCommunication {
             this.baseUri = "http://" + host + (port == 80 ? "" : ":" + port);
             this.httpHost = new HttpHost(host, port, "http");
         }
+        this.owner = null;
+        this.headers = new HeaderMap();
+        this.jsonCodec = newJsonCodec(sysConfig.getProperty(SYSPROP_JSON_CODEC, "org.json"));
+        String ae = sysConfig.getProperty(SYSPROP_ACCEPT_ENCODING, "gzip, deflate, br");
+        this.acceptEncoding = StringUtils.isBlank(ae) || "identity".equalsIgnoreCase(ae.trim()) ? null : ae;
+        String rc = sysConfig.getProperty(SYSPROP_REQUEST_COMPRESSION, "none").trim().toLowerCase();
+        if (!"none".equals(rc) && !"gzip".equals(rc) && !"deflate".equals(rc)) {
+            throw new IllegalArgumentException("unsupported request compression " + rc);
+        }
+        this.requestCompression = "none".equals(rc) ? null : rc;
+        this.requestCompressionThreshold = sysConfig.getIntProperty(SYSPROP_REQUEST_COMPRESSION_THRESHOLD, 1024);
+        this.responseTime = new ResponseTimeRecorder(
+            sysConfig.getIntProperty(SYSPROP_RESPONSE_TIME_CAPACITY, 10000),
+            sysConfig.getIntProperty(SYSPROP_RESPONSE_TIME_ENDPOINTS, 200));
+        this.resilience = new UriPatternMatcher<>();
+        this.resiliencePolicies = new ConcurrentSkipListMap<>();
+    }
+
+    private WebServiceCommunication(WebServiceCommunication owner, HeaderMap defaultHeaders) {
+        this.owner = owner;
+        this.httpHost = owner.httpHost;
+        this.baseUri = owner.baseUri;
+        this.clientCertificate = owner.clientCertificate;
+        this.keyPassword = owner.keyPassword;
+        this.username = owner.username;
+        this.password = owner.password;
+        this.userPassCredentialsProvider = owner.userPassCredentialsProvider;
+        this.authCache = owner.authCache;
+        this.preemptiveScheme = owner.preemptiveScheme;
+        this.headers = new HeaderMap(defaultHeaders);
+        this.responseTime = owner.responseTime;
+        this.resilience = owner.resilience;
+        this.resiliencePolicies = owner.resiliencePolicies;
+        this.jsonCodec = owner.jsonCodec;
+        this.acceptEncoding = owner.acceptEncoding;
+        this.requestCompression = owner.requestCompression;
+        this.requestCompressionThreshold = owner.requestCompressionThreshold;
+    }
+
+    /**
+     * Creates a session of this communication, which shares connection pools, HTTP/2 transport, credentials, client
+     * certificate and response time recorder of this communication, and has its own cookie store and a copy of
+     * current headers. Sessions are cheap, and thread-safe by themselves, so that many virtual users can run on one
+     * connection pool, each with a session of its own. Call {@link #connect()} of this communication first.
+     *
+     * @return new session
+     */
+    public WebServiceCommunication newSession() {
+        WebServiceCommunication o = this.transportOwner();
+        if (o.client == null) {
+            throw new IllegalStateException("call connect() first");
+        }
+        return new WebServiceCommunication(o, this.headers);
+    }
+
+    /**
+     * @return true if this is a session created by {@link #newSession()}
+     */
+    public boolean isSession() {
+        return this.owner != null;
+    }
+
+    /**
+     * Gets cookies of this communication, or of this session.
+     *
+     * @return cookie store
+     */
+    public CookieStore getCookieStore() {
+        return cookieStore;
     }
 
     /**
@@ -379,8 +667,8 @@ public class WebServiceCommunication extends EntityCommunication {
             new UsernamePasswordCredentials(username, password));
 
         authCache = new BasicAuthCache();
-        BasicScheme basicAuth = new BasicScheme();
-        authCache.put(httpHost, basicAuth);
+        preemptiveScheme = new BasicScheme();
+        authCache.put(httpHost, preemptiveScheme);
     }
 
     /**
@@ -393,6 +681,11 @@ public class WebServiceCommunication extends EntityCommunication {
         this.headers.put(name, value);
     }
 
+    /**
+     * Gets headers for all subsequent HTTP requests. The map is thread-safe, and updates are copy-on-write.
+     *
+     * @return headers
+     */
     public Map<String, String> getHeaders() {
         return headers;
     }
@@ -410,29 +703,30 @@ public class WebServiceCommunication extends EntityCommunication {
     }
 
     /**
+     * Creates connection pools. A session uses connection of its owner, and cannot be connected by itself.
      *
      * @throws Exception in case of any issue
      */
     @Override
     public void connect() throws Exception {
+        if (this.owner != null) {
+            throw new IllegalStateException("session shares connection of its owner, connect the owner instead");
+        }
         this.disconnect();
 
         SSLContextBuilder contextBuilder = SSLContexts.custom();
         contextBuilder.loadTrustMaterial(null, acceptingTrustStrategy);
 
         RegistryBuilder<ConnectionSocketFactory> registryBuilder = RegistryBuilder.<ConnectionSocketFactory>create()
-            .register("http", new PlainConnectionSocketFactory());
+            .register("http", new TimingPlainSocketFactory());
 
-        HttpClientBuilder httpClientBuilder = HttpClients.custom()
-            .setUserAgent(USER_AGENT)
-            .setKeepAliveStrategy(keepAliveStrategy)
-            .setDefaultRequestConfig(RequestConfig.custom().setCookieSpec(cookieSpec).build())
-            .setDefaultCookieStore(this.cookieStore)
-            .setRedirectStrategy(new LaxRedirectStrategy());
-
-        if (userPassCredentialsProvider != null) {
-            httpClientBuilder.addInterceptorFirst(preemptiveAuth);
+        boolean useHttp2 = Boolean.parseBoolean(sysConfig.getProperty(SYSPROP_HTTP2, "false"));
+        boolean useCache = Boolean.parseBoolean(sysConfig.getProperty(SYSPROP_CACHE, "false"));
+        if (useHttp2 && useCache) {
+            LOG.warn("Response cache is not supported over HTTP/2, cache is disabled");
+            useCache = false;
         }
+        HttpClientBuilder httpClientBuilder = this.configure(this.newHttpClientBuilder(useCache));
 
         if (clientCertificate != null && keyPassword != null) {
             LOG.debug("client cert {}", clientCertificate);
@@ -444,44 +738,507 @@ public class WebServiceCommunication extends EntityCommunication {
         }
 
         if ("https".equals(httpHost.getSchemeName())) {
-            SSLContext sslContext = contextBuilder.build();
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(sslContext, new NoopHostnameVerifier());
+            sslContext = contextBuilder.build();
+            SSLConnectionSocketFactory sslsf = new TimingSslSocketFactory(sslContext, new NoopHostnameVerifier());
             registryBuilder.register("https", sslsf);
             httpClientBuilder.setSSLSocketFactory(sslsf);
         }
 
         Registry<ConnectionSocketFactory> socketFactoryRegistry = registryBuilder.build();
         PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-        cm.setMaxTotal(200);
-        cm.setDefaultMaxPerRoute(20);
-        cm.setValidateAfterInactivity(5000);
-        cm.setMaxPerRoute(new HttpRoute(httpHost), 200);
+        cm.setMaxTotal(sysConfig.getIntProperty(SYSPROP_MAX_TOTAL, 200));
+        cm.setDefaultMaxPerRoute(sysConfig.getIntProperty(SYSPROP_MAX_PER_ROUTE, 20));
+        cm.setValidateAfterInactivity(sysConfig.getIntProperty(SYSPROP_VALIDATE_AFTER_INACTIVITY, 5000));
+        cm.setMaxPerRoute(new HttpRoute(httpHost), sysConfig.getIntProperty(SYSPROP_MAX_PER_HOST, 200));
         cm.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(sysConfig.getIntProperty(SYSPROP_SO_TIMEOUT, 0))
             .build());
+        this.connectionManager = cm;
 
-        cmt = new IdleConnectionMonitorThread(cm);
+        long idleTimeout = sysConfig.getIntProperty(SYSPROP_IDLE_TIMEOUT, 10000);
+        cmt = new IdleConnectionMonitorThread(() -> {
+            cm.closeExpiredConnections();
+            cm.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }, sysConfig.getIntProperty(SYSPROP_IDLE_CHECK_INTERVAL, 5000));
         cmt.setDaemon(true);
         cmt.start();
 
         this.client = httpClientBuilder.setConnectionManager(cm).build();
+        this.sessionClient = this.cacheStorage == null ? this.client
+            : this.configure(HttpClients.custom()).setConnectionManager(cm).setConnectionManagerShared(true).build();
+
+        if (useHttp2) {
+            LOG.debug("use HTTP/2 transport");
+            this.http2 = new Http2Transport(sslContext, username, password,
+                sysConfig.getIntProperty(SYSPROP_SO_TIMEOUT, 0),
+                sysConfig.getIntProperty(SYSPROP_HTTP2_MAX_STREAMS, 100));
+        } else {
+            this.http2 = null;
+        }
     }
 
     /**
+     * Closes connection pools. Disconnecting a session does not close connections shared with its owner.
+     *
      * @throws Exception in case of any issue
      */
     @Override
     public void disconnect() throws Exception {
+        if (this.owner != null) {
+            return;
+        }
         try {
             if (cmt != null) {
                 cmt.shutdown();
             }
         } finally {
-            if (this.client != null) {
-                this.client.close();
+            try {
+                if (this.sessionClient != null && this.sessionClient != this.client) {
+                    this.sessionClient.close();
+                }
+                if (this.client != null) {
+                    this.client.close();
+                }
+                if (this.cacheStorage != null) {
+                    this.cacheStorage.shutdown();
+                }
+            } finally {
+                this.http2 = null;
+                synchronized (this) {
+                    if (this.asyncClient != null) {
+                        this.asyncCmt.shutdown();
+                        this.asyncClient.close();
+                        this.asyncClient = null;
+                        this.asyncConnectionManager = null;
+                    }
+                }
             }
         }
     }
 
+    /**
+     * Gets the non-blocking client, which is created and started on first use. It shares cookie store, headers,
+     * basic authentication and client certificate with the blocking client. Sessions share the client of owner.
+     *
+     * @return the started async client
+     *
+     * @throws IOException if the I/O reactor cannot be created
+     */
+    public CloseableHttpAsyncClient getAsyncClient() throws IOException {
+        if (this.owner != null) {
+            return this.owner.getAsyncClient();
+        }
+        return this.createAsyncClient();
+    }
+
+    private synchronized CloseableHttpAsyncClient createAsyncClient() throws IOException {
+        if (this.asyncClient != null) {
+            return this.asyncClient;
+        }
+        if (this.client == null) {
+            throw new IllegalStateException("call connect() first");
+        }
+
+        RegistryBuilder<SchemeIOSessionStrategy> registryBuilder = RegistryBuilder.<SchemeIOSessionStrategy>create()
+            .register("http", NoopIOSessionStrategy.INSTANCE);
+        if (sslContext != null) {
+            registryBuilder.register("https", new SSLIOSessionStrategy(sslContext, new NoopHostnameVerifier()));
+        }
+
+        IOReactorConfig ioConfig = IOReactorConfig.custom()
+            .setIoThreadCount(Runtime.getRuntime().availableProcessors())
+            .setSoTimeout(sysConfig.getIntProperty(SYSPROP_SO_TIMEOUT, 0))
+            .build();
+        PoolingNHttpClientConnectionManager cm = new PoolingNHttpClientConnectionManager(
+            new DefaultConnectingIOReactor(ioConfig), registryBuilder.build());
+        cm.setMaxTotal(sysConfig.getIntProperty(SYSPROP_MAX_TOTAL, 200));
+        cm.setDefaultMaxPerRoute(sysConfig.getIntProperty(SYSPROP_MAX_PER_ROUTE, 20));
+        cm.setMaxPerRoute(new HttpRoute(httpHost), sysConfig.getIntProperty(SYSPROP_MAX_PER_HOST, 200));
+        this.asyncConnectionManager = cm;
+
+        HttpAsyncClientBuilder httpClientBuilder = HttpAsyncClients.custom()
+            .setUserAgent(USER_AGENT)
+            .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+            .setDefaultRequestConfig(RequestConfig.custom().setCookieSpec(cookieSpec).build())
+            .setRedirectStrategy(new LaxRedirectStrategy())
+            .setConnectionManager(cm);
+
+        if (userPassCredentialsProvider != null) {
+            httpClientBuilder.addInterceptorFirst(preemptiveAuth);
+        }
+
+        long idleTimeout = sysConfig.getIntProperty(SYSPROP_IDLE_TIMEOUT, 10000);
+        asyncCmt = new IdleConnectionMonitorThread(() -> {
+            cm.closeExpiredConnections();
+            cm.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }, sysConfig.getIntProperty(SYSPROP_IDLE_CHECK_INTERVAL, 5000));
+        asyncCmt.setDaemon(true);
+        asyncCmt.start();
+
+        this.asyncClient = httpClientBuilder.build();
+        this.asyncClient.start();
+        return this.asyncClient;
+    }
+
+    /**
+     * Issues HTTP request without blocking, with all headers, cookies and authentication of this communication.
+     * Response status is not checked, but is retried or hedged by the resilience policy of the endpoint, if any, see
+     * {@link #setResiliencePolicy(String, ResiliencePolicy)}.
+     *
+     * @param request   HTTP request
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of the buffered response
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request, String requestId) throws IOException {
+        Resilience r = this.resilience(request);
+        if (r == null) {
+            return this.executeOnceAsync(request, requestId);
+        }
+        return r.executeAsync(request, attempt -> this.executeOnceAsync(attempt, requestId));
+    }
+
+    private CompletableFuture<HttpResponse> executeOnceAsync(HttpUriRequest request, String requestId)
+        throws IOException {
+        Http2Transport h2 = this.transportOwner().http2;
+        if (h2 != null) {
+            RequestRecord record = new RequestRecord();
+            this.prepare(request, record);
+            return h2.executeAsync(request, record, this.cookieStore)
+                .thenApply(response -> {
+                    try {
+                        return ContentCompression.decodeBuffered(response, record);
+                    } catch (IOException ex) {
+                        throw new CompletionException(ex);
+                    }
+                })
+                .whenComplete((response, ex) -> this.recordResponseTime(request, requestId, record));
+        }
+        CloseableHttpAsyncClient c = this.getAsyncClient();
+        RequestRecord record = new RequestRecord();
+        this.prepare(request, record);
+        HttpClientContext context = this.getHttpClientContext();
+        context.setAttribute(RequestRecord.CONTEXT_ATTRIBUTE, record);
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        Future<HttpResponse> execution = c.execute(request, context, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    ContentCompression.decodeBuffered(response, record);
+                } catch (IOException ex) {
+                    this.failed(ex);
+                    return;
+                }
+                recordResponseTime(request, requestId, record);
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                recordResponseTime(request, requestId, record);
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        future.whenComplete((response, ex) -> {
+            if (ex instanceof CancellationException) {
+                execution.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Issues HTTP HEAD request without blocking.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response headers
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<Header[]> headAsync(String endpoint, String params, String requestId) throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} HEAD {}", this.hashCode(), url);
+        return this.executeAsync(new HttpHead(url), requestId).thenApply(response -> {
+            this.checkAsync(response);
+            return response.getAllHeaders();
+        });
+    }
+
+    /**
+     * Issues HTTP GET request without blocking.
+     *
+     * @param endpoint endpoint of request url
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> getAsync(String endpoint) throws IOException {
+        return this.getAsync(endpoint, null, null);
+    }
+
+    /**
+     * Issues HTTP GET request without blocking.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> getAsync(String endpoint, String params, String requestId) throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} GET {}", this.hashCode(), url);
+        return this.executeAsync(new HttpGet(url), requestId).thenApply(this::checkAsync);
+    }
+
+    /**
+     * Issues HTTP GET request without blocking, converts response body to a JSON object.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response body as JSON object
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<JSONObject> getJsonObjectAsync(String endpoint, String params, String requestId)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} GET {}", this.hashCode(), url);
+        HttpGet get = new HttpGet(url);
+        get.setHeader(JSON_CONTENT_TYPE);
+        return this.executeAsync(get, requestId).thenApply(response -> {
+            try {
+                return consume(response, res -> {
+                    try (Reader reader = readerOf(res.getEntity())) {
+                        return this.jsonCodec.readObject(reader);
+                    }
+                });
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    /**
+     * Issues HTTP DELETE request without blocking.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> deleteAsync(String endpoint, String params, String requestId) throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} DELETE {}", this.hashCode(), url);
+        return this.executeAsync(new HttpDelete(url), requestId).thenApply(this::checkAsync);
+    }
+
+    /**
+     * Issues HTTP POST request without blocking.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param body      request body
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> postAsync(String endpoint, String params, String body, String requestId)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} POST {}", this.hashCode(), url);
+        HttpPost post = new HttpPost(url);
+
+        StringEntity entity = new StringEntity(body);
+        entity.setContentType(ContentType.TEXT_PLAIN.getMimeType());
+        post.setEntity(entity);
+        return this.executeAsync(post, requestId).thenApply(this::checkAsync);
+    }
+
+    /**
+     * Issues HTTP POST request without blocking.
+     *
+     * @param endpoint endpoint of request url
+     * @param json     request body
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> postJsonAsync(String endpoint, JSONObject json) throws IOException {
+        return this.postJsonAsync(endpoint, "", json, "");
+    }
+
+    /**
+     * Issues HTTP POST request without blocking.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param json      request body
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> postJsonAsync(String endpoint, String params, JSONObject json, String requestId)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} POST {}", this.hashCode(), url);
+        HttpPost post = new HttpPost(url);
+
+        post.setEntity(this.jsonCodec.newEntity(json));
+        return this.executeAsync(post, requestId).thenApply(this::checkAsync);
+    }
+
+    /**
+     * Issues HTTP PUT request without blocking.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param body      request body
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> putAsync(String endpoint, String params, String body, String requestId)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} PUT {}", this.hashCode(), url);
+        HttpPut put = new HttpPut(url);
+
+        StringEntity entity = new StringEntity(body);
+        entity.setContentType(ContentType.TEXT_PLAIN.getMimeType());
+        put.setEntity(entity);
+        return this.executeAsync(put, requestId).thenApply(this::checkAsync);
+    }
+
+    /**
+     * Issues HTTP PUT request without blocking.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param json      request body
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return future of response body
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public CompletableFuture<String> putJsonAsync(String endpoint, String params, JSONObject json, String requestId)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} PUT {}", this.hashCode(), url);
+        HttpPut put = new HttpPut(url);
+
+        put.setEntity(this.jsonCodec.newEntity(json));
+        return this.executeAsync(put, requestId).thenApply(this::checkAsync);
+    }
+
+    /**
+     * Issues a batch of independent requests, collects results of all of them. See
+     * {@link #executeBatch(List, int, boolean)}.
+     *
+     * @param requests    requests to issue
+     * @param concurrency maximal number of requests in flight
+     *
+     * @return results in the same order as requests
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public List<BatchResult> executeBatch(List<BatchRequest> requests, int concurrency) throws IOException {
+        return this.executeBatch(requests, concurrency, false);
+    }
+
+    /**
+     * Issues a batch of independent requests without blocking on each other, keeping at most concurrency requests
+     * in flight, over the async connection pool, or HTTP/2 transport. The actual concurrency is also bounded by
+     * reactor.comm.ws.MAX_PER_ROUTE for HTTP/1.1. Blocks until all issued requests complete, so wall-clock time is
+     * close to the slowest request when concurrency is large enough. Non-2xx responses are failures.
+     *
+     * @param requests    requests to issue
+     * @param concurrency maximal number of requests in flight
+     * @param failFast    true to stop issuing requests after the first failure, requests in flight still complete
+     *
+     * @return results in the same order as requests
+     *
+     * @throws BatchException in fail-fast mode, if any request fails
+     * @throws IOException    in case of any IO related issue
+     */
+    public List<BatchResult> executeBatch(List<BatchRequest> requests, int concurrency, boolean failFast)
+        throws IOException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        LOG.debug("{} batch of {} requests, concurrency {}", this.hashCode(), requests.size(), concurrency);
+        BatchResult[] results = new BatchResult[requests.size()];
+        Semaphore permits = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requests.size());
+        AtomicReference<BatchResult> failure = new AtomicReference<>();
+        long batchStart = System.nanoTime();
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                BatchRequest br = requests.get(i);
+                permits.acquire();
+                if (failFast && failure.get() != null) {
+                    permits.release();
+                    results[i] = BatchResult.skipped(i, br);
+                    done.countDown();
+                    continue;
+                }
+                int index = i;
+                long start = System.nanoTime();
+                CompletableFuture<HttpResponse> future;
+                try {
+                    future = this.executeAsync(this.newBatchRequest(br), br.getRequestId());
+                } catch (IOException | RuntimeException ex) {
+                    future = CompletableFuture.failedFuture(ex);
+                }
+                future.whenComplete((response, ex) -> {
+                    BatchResult result = batchResult(index, br, response, ex, start - batchStart,
+                        System.nanoTime() - start);
+                    results[index] = result;
+                    if (!result.isSuccess()) {
+                        failure.compareAndSet(null, result);
+                    }
+                    permits.release();
+                    done.countDown();
+                });
+            }
+            done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("batch is interrupted");
+        }
+        List<BatchResult> list = Arrays.asList(results);
+        LOG.debug("{} batch done in {} ms", this.hashCode(), (System.nanoTime() - batchStart) / 1000000);
+        if (failFast && failure.get() != null) {
+            throw new BatchException(list, failure.get());
+        }
+        return list;
+    }
+
     /**
      * Issues HTTP HEAD request, returns response headers.
      *
@@ -521,19 +1278,11 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public Header[] head(String endpoint, String params, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("HEAD {}", url);
         HttpHead head = new HttpHead(url);
 
-        this.addHeaders(head);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(head, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        check(response);
-        return response.getAllHeaders();
+        return this.executeResponse(head, requestId, HttpResponse::getAllHeaders);
     }
 
     /**
@@ -575,77 +1324,154 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public JSONObject getJsonObject(String endpoint, String params, String requestId) throws IOException {
-        String ct = this.headers.get("Content-Type");
-        this.headers.put("Content-Type", ContentType.APPLICATION_JSON.getMimeType());
-        String res = this.get(endpoint, params, requestId);
-        try {
-            return new JSONObject(res);
-        } catch (JSONException ex) {
-            LOG.warn(res);
-            throw ex;
-        } finally {
-            if (ct == null) {
-                this.headers.remove("Content-Type");
-            } else {
-                this.headers.put("Content-Type", ct);
+        String url = this.url(endpoint, params);
+        LOG.debug("{} GET {}", this.hashCode(), url);
+        HttpGet get = new HttpGet(url);
+        get.setHeader(JSON_CONTENT_TYPE);
+        return this.executeResponse(get, requestId, response -> {
+            try (Reader reader = readerOf(response.getEntity())) {
+                return this.jsonCodec.readObject(reader);
             }
-        }
+        });
+    }
+
+    /**
+     * Issues HTTP GET request, converts response body to a JSON array object.
+     *
+     * @param endpoint endpoint of request url
+     *
+     * @return response body to a JSON array object
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public JSONArray getJsonArray(String endpoint) throws IOException {
+        return getJsonArray(endpoint, null, null);
+    }
+
+    /**
+     * Issues HTTP GET request, converts response body to a JSON array object.
+     *
+     * @param endpoint endpoint of request url
+     * @param params   request line parameters
+     *
+     * @return response body to a JSON array object
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public JSONArray getJsonArray(String endpoint, String params) throws IOException {
+        return getJsonArray(endpoint, params, null);
+    }
+
+    /**
+     * Issues HTTP GET request, converts response body to a JSON array object.
+     *
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param requestId request id for record response time in millisecond
+     *
+     * @return response body to a JSON array object
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public JSONArray getJsonArray(String endpoint, String params, String requestId) throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} GET {}", this.hashCode(), url);
+        HttpGet get = new HttpGet(url);
+        get.setHeader(JSON_CONTENT_TYPE);
+        return this.executeResponse(get, requestId, response -> {
+            try (Reader reader = readerOf(response.getEntity())) {
+                return this.jsonCodec.readArray(reader);
+            }
+        });
+    }
+
+    /**
+     * Issues HTTP request, and passes response body stream to handler. The connection is released back to pool as
+     * soon as the handler returns, the response body is never fully buffered.
+     *
+     * @param <T>       type of the result
+     * @param request   HTTP request
+     * @param requestId request id for record response time in millisecond
+     * @param handler   response body handler, only called for 2xx responses
+     *
+     * @return result of the handler
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    public <T> T execute(HttpUriRequest request, String requestId, StreamHandler<T> handler) throws IOException {
+        return this.executeResponse(request, requestId, response -> handler.handle(contentOf(response.getEntity())),
+            false);
     }
 
     /**
-     * Issues HTTP GET request, converts response body to a JSON array object.
+     * Issues HTTP GET request, and passes response body stream to handler.
      *
-     * @param endpoint endpoint of request url
+     * @param <T>       type of the result
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param requestId request id for record response time in millisecond
+     * @param handler   response body handler
      *
-     * @return response body to a JSON array object
+     * @return result of the handler
      *
      * @throws IOException in case of any IO related issue
      */
-    public JSONArray getJsonArray(String endpoint) throws IOException {
-        return getJsonArray(endpoint, null, null);
+    public <T> T getStream(String endpoint, String params, String requestId, StreamHandler<T> handler)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} GET {}", this.hashCode(), url);
+        return this.execute(new HttpGet(url), requestId, handler);
     }
 
     /**
-     * Issues HTTP GET request, converts response body to a JSON array object.
+     * Issues HTTP GET request, and passes response body reader to handler.
      *
-     * @param endpoint endpoint of request url
-     * @param params   request line parameters
+     * @param <T>       type of the result
+     * @param endpoint  endpoint of request url
+     * @param params    request line parameters
+     * @param requestId request id for record response time in millisecond
+     * @param handler   response body handler
      *
-     * @return response body to a JSON array object
+     * @return result of the handler
      *
      * @throws IOException in case of any IO related issue
      */
-    public JSONArray getJsonArray(String endpoint, String params) throws IOException {
-        return getJsonArray(endpoint, params, null);
+    public <T> T getReader(String endpoint, String params, String requestId, ReaderHandler<T> handler)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} GET {}", this.hashCode(), url);
+        return this.executeResponse(new HttpGet(url), requestId, response -> {
+            try (Reader reader = readerOf(response.getEntity())) {
+                return handler.handle(reader);
+            }
+        }, false);
     }
 
     /**
-     * Issues HTTP GET request, converts response body to a JSON array object.
+     * Issues HTTP GET request, and passes JSON tokens of response body to handler, without building JSON object in
+     * memory. Malformed content is reported with JSONException, same as other JSON methods.
      *
      * @param endpoint  endpoint of request url
      * @param params    request line parameters
      * @param requestId request id for record response time in millisecond
-     *
-     * @return response body to a JSON array object
+     * @param handler   JSON token handler
      *
      * @throws IOException in case of any IO related issue
      */
-    public JSONArray getJsonArray(String endpoint, String params, String requestId) throws IOException {
-        String ct = this.headers.get("Content-Type");
-        this.headers.put("Content-Type", ContentType.APPLICATION_JSON.getMimeType());
-        String res = this.get(endpoint, params, requestId);
-        try {
-            return new JSONArray(res);
-        } catch (JSONException ex) {
-            LOG.warn(res);
-            throw ex;
-        } finally {
-            if (ct == null) {
-                this.headers.remove("Content-Type");
-            } else {
-                this.headers.put("Content-Type", ct);
+    public void getJsonTokens(String endpoint, String params, String requestId, JsonTokenHandler handler)
+        throws IOException {
+        String url = this.url(endpoint, params);
+        LOG.debug("{} GET {}", this.hashCode(), url);
+        HttpGet get = new HttpGet(url);
+        get.setHeader(JSON_CONTENT_TYPE);
+        this.executeResponse(get, requestId, response -> {
+            try (Reader reader = readerOf(response.getEntity())) {
+                if (!new JsonTokenReader(reader).read(handler)) {
+                    abort(response);
+                }
             }
-        }
+            return null;
+        }, false);
     }
 
     /**
@@ -687,18 +1513,11 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String get(String endpoint, String params, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} GET {}", this.hashCode(), url);
         HttpGet get = new HttpGet(url);
 
-        this.addHeaders(get);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(get, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        return check(response);
+        return this.execute(get, requestId);
     }
 
     /**
@@ -740,18 +1559,11 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String delete(String endpoint, String params, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} DELETE {}", this.hashCode(), url);
         HttpDelete delete = new HttpDelete(url);
 
-        this.addHeaders(delete);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(delete, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        return check(response);
+        return this.execute(delete, requestId);
     }
 
     /**
@@ -767,7 +1579,7 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String delete(String endpoint, String params, String body, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} DELETE {}", this.hashCode(), url);
         HttpPost delete = new HttpPost(url) {
             @Override
@@ -780,14 +1592,7 @@ public class WebServiceCommunication extends EntityCommunication {
         entity.setContentType(ContentType.TEXT_PLAIN.getMimeType());
         delete.setEntity(entity);
 
-        this.addHeaders(delete);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(delete, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        return check(response);
+        return this.execute(delete, requestId);
     }
 
     /**
@@ -803,7 +1608,7 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String deleteJson(String endpoint, String params, JSONObject json, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} DELETE {}", this.hashCode(), url);
         HttpPost delete = new HttpPost(url) {
             @Override
@@ -812,18 +1617,9 @@ public class WebServiceCommunication extends EntityCommunication {
             }
         };
 
-        StringEntity entity = new StringEntity(json.toString());
-        entity.setContentType(ContentType.APPLICATION_JSON.getMimeType());
-        delete.setEntity(entity);
+        delete.setEntity(this.jsonCodec.newEntity(json));
 
-        this.addHeaders(delete);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(delete, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        return check(response);
+        return this.execute(delete, requestId);
     }
 
     /**
@@ -868,24 +1664,13 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String postJson(String endpoint, String params, JSONObject json, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} POST {}", this.hashCode(), url);
         HttpPost post = new HttpPost(url);
 
-        StringEntity entity = new StringEntity(json.toString());
-        entity.setContentType(ContentType.APPLICATION_JSON.getMimeType());
-        post.setEntity(entity);
-
-        this.addHeaders(post);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(post, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
+        post.setEntity(this.jsonCodec.newEntity(json));
 
-        String res = check(response);
-        return res;
+        return this.execute(post, requestId);
     }
 
     /**
@@ -943,7 +1728,7 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String post(String endpoint, String params, String body, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} POST {}", this.hashCode(), url);
         HttpPost post = new HttpPost(url);
 
@@ -951,15 +1736,7 @@ public class WebServiceCommunication extends EntityCommunication {
         entity.setContentType(ContentType.TEXT_PLAIN.getMimeType());
         post.setEntity(entity);
 
-        this.addHeaders(post);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(post, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        String res = check(response);
-        return res;
+        return this.execute(post, requestId);
     }
 
     /**
@@ -1007,19 +1784,11 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String postEntity(String endpoint, String params, HttpEntity entity, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} POST {}", this.hashCode(), url);
         HttpPost post = new HttpPost(url);
         post.setEntity(entity);
-        this.addHeaders(post);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(post, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        String res = check(response);
-        return res;
+        return this.execute(post, requestId);
     }
 
     /**
@@ -1064,22 +1833,13 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String putJson(String endpoint, String params, JSONObject json, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} PUT {}", this.hashCode(), url);
         HttpPut put = new HttpPut(url);
 
-        StringEntity entity = new StringEntity(json.toString());
-        entity.setContentType(ContentType.APPLICATION_JSON.getMimeType());
-        put.setEntity(entity);
+        put.setEntity(this.jsonCodec.newEntity(json));
 
-        this.addHeaders(put);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(put, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        return check(response);
+        return this.execute(put, requestId);
     }
 
     /**
@@ -1124,7 +1884,7 @@ public class WebServiceCommunication extends EntityCommunication {
      * @throws IOException in case of any IO related issue
      */
     public String put(String endpoint, String params, String body, String requestId) throws IOException {
-        String url = String.format("%s%s%s", this.baseUri, endpoint, StringUtils.isBlank(params) ? "" : "?" + params);
+        String url = this.url(endpoint, params);
         LOG.debug("{} PUT {}", this.hashCode(), url);
         HttpPut put = new HttpPut(url);
 
@@ -1132,14 +1892,7 @@ public class WebServiceCommunication extends EntityCommunication {
         entity.setContentType(ContentType.TEXT_PLAIN.getMimeType());
         put.setEntity(entity);
 
-        this.addHeaders(put);
-        HttpClientContext context = this.getHttpClientContext();
-        long start = System.currentTimeMillis();
-        CloseableHttpResponse response = this.client.execute(put, context);
-        if (!StringUtils.isBlank(requestId)) {
-            this.responseTime.put(requestId, System.currentTimeMillis() - start);
-        }
-        return check(response);
+        return this.execute(put, requestId);
     }
 
     /**
@@ -1147,10 +1900,10 @@ public class WebServiceCommunication extends EntityCommunication {
      *
      * @param reqId request id
      *
-     * @return time in millisecond
+     * @return time in millisecond, or null if not recorded or already evicted
      */
     public Long getResponseTime(String reqId) {
-        return responseTime.get(reqId);
+        return responseTime.getResponseTime(reqId);
     }
 
     /**
@@ -1162,6 +1915,27 @@ public class WebServiceCommunication extends EntityCommunication {
         this.responseTime.remove(reqId);
     }
 
+    /**
+     * Gets phase timing previously recorded, such as pool lease wait, connect, TLS handshake, time to first byte and
+     * body transfer.
+     *
+     * @param reqId request id
+     *
+     * @return request record, or null if not recorded or already evicted
+     */
+    public RequestRecord getRequestRecord(String reqId) {
+        return responseTime.getRequestRecord(reqId);
+    }
+
+    /**
+     * Gets the recorder of response time, with latency histograms of all requested methods and endpoints.
+     *
+     * @return response time recorder
+     */
+    public ResponseTimeRecorder getResponseTimeRecorder() {
+        return responseTime;
+    }
+
     /**
      * Encodes with UTF-8.
      *
@@ -1213,34 +1987,228 @@ public class WebServiceCommunication extends EntityCommunication {
         return password;
     }
 
+    /**
+     * @return the blocking client, for a session one on the connection pool of its owner that bypasses response cache
+     */
     public CloseableHttpClient getClient() {
-        return client;
+        return this.owner == null ? this.client : this.owner.sessionClient;
+    }
+
+    /**
+     * Gets the HTTP/2 transport, with stream concurrency statistics.
+     *
+     * @return HTTP/2 transport, or null if reactor.comm.ws.HTTP2 is not enabled, or communication is disconnected
+     */
+    public Http2Transport getHttp2Transport() {
+        return this.transportOwner().http2;
+    }
+
+    /**
+     * Gets live statistics of the connection pool of blocking requests.
+     *
+     * @return snapshot of pool statistics, total and per route
+     */
+    public PoolMetrics getPoolMetrics() {
+        PoolingHttpClientConnectionManager cm = this.transportOwner().connectionManager;
+        if (cm == null) {
+            throw new IllegalStateException("call connect() first");
+        }
+        return PoolMetrics.of(cm);
+    }
+
+    /**
+     * Gets live statistics of the connection pool of non-blocking requests.
+     *
+     * @return snapshot of pool statistics, or null if no async request is issued yet
+     */
+    public PoolMetrics getAsyncPoolMetrics() {
+        WebServiceCommunication o = this.transportOwner();
+        synchronized (o) {
+            return o.asyncConnectionManager == null ? null : PoolMetrics.of(o.asyncConnectionManager);
+        }
+    }
+
+    /**
+     * @return JSON codec of request and response bodies
+     */
+    public JsonCodec getJsonCodec() {
+        return jsonCodec;
+    }
+
+    /**
+     * Sets JSON codec of request and response bodies, sessions created afterwards use the same codec.
+     *
+     * @param jsonCodec JSON codec, see {@link OrgJsonCodec} and {@link StreamingJsonCodec}
+     */
+    public void setJsonCodec(JsonCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+    }
+
+    /**
+     * Gets counters of the response cache of the owner communication, sessions do not use the cache.
+     *
+     * @return cache counters, or null if response cache is not enabled, see {@link #SYSPROP_CACHE}
+     */
+    public CacheStats getCacheStats() {
+        WebServiceCommunication o = this.transportOwner();
+        return o.cacheStorage == null ? null : o.cacheStats;
+    }
+
+    /**
+     * Removes all cached responses, if response cache is enabled.
+     */
+    public void clearCache() {
+        WebServiceCommunication o = this.transportOwner();
+        if (o.cacheStorage != null) {
+            o.cacheStorage.clear();
+        }
+    }
+
+    /**
+     * Applies a resilience policy to requests of matching endpoints, of this communication and all of its sessions.
+     * Patterns are the same as of request handlers, such as "*", "/api/*" or "*.json", and the most specific one
+     * wins. Configure the policy before setting it.
+     *
+     * @param pattern endpoint pattern
+     * @param policy  resilience policy, or null to remove the policy of the pattern
+     */
+    public void setResiliencePolicy(String pattern, ResiliencePolicy policy) {
+        synchronized (this.resilience) {
+            if (policy == null) {
+                this.resilience.unregister(pattern);
+                this.resiliencePolicies.remove(pattern);
+                return;
+            }
+            Resilience r = new Resilience(pattern, policy, this.responseTime);
+            this.resilience.register(pattern, r);
+            this.resiliencePolicies.put(pattern, r);
+            LOG.debug("{} resilience policy {}", this.hashCode(), r);
+        }
+    }
+
+    /**
+     * Gets retry, hedging and circuit breaker counters of each resilience policy.
+     *
+     * @return unmodifiable map of metrics, keyed by endpoint pattern
+     */
+    public Map<String, ResilienceMetrics> getResilienceMetrics() {
+        Map<String, ResilienceMetrics> metrics = new LinkedHashMap<>();
+        this.resiliencePolicies.forEach((pattern, r) -> metrics.put(pattern, r.getMetrics()));
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    private HttpClientBuilder configure(HttpClientBuilder builder) {
+        builder.setRequestExecutor(new TimingRequestExecutor())
+            .setUserAgent(USER_AGENT)
+            .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+            .setDefaultRequestConfig(RequestConfig.custom().setCookieSpec(cookieSpec).build())
+            .setRedirectStrategy(new LaxRedirectStrategy())
+            .disableContentCompression();
+        if (userPassCredentialsProvider != null) {
+            builder.addInterceptorFirst(preemptiveAuth);
+        }
+        return builder;
+    }
+
+    private HttpClientBuilder newHttpClientBuilder(boolean useCache) throws IOException {
+        if (!useCache) {
+            this.cacheStorage = null;
+            return HttpClients.custom();
+        }
+        CacheConfig cacheConfig = CacheConfig.custom()
+            .setMaxCacheEntries(sysConfig.getIntProperty(SYSPROP_CACHE_MAX_ENTRIES, 1000))
+            .setMaxObjectSize(sysConfig.getIntProperty(SYSPROP_CACHE_MAX_OBJECT_SIZE, 1024 * 1024))
+            .setSharedCache(false)
+            .build();
+        this.cacheStorage = new ResponseCacheStorage(cacheConfig.getMaxCacheEntries(),
+            sysConfig.getIntProperty(SYSPROP_CACHE_TTL, 0));
+        CachingHttpClientBuilder builder = CachingHttpClients.custom()
+            .setCacheConfig(cacheConfig)
+            .setHttpCacheStorage(this.cacheStorage);
+        String dir = sysConfig.getProperty(SYSPROP_CACHE_DIR);
+        if (StringUtils.isNotBlank(dir)) {
+            File cacheDir = new File(dir);
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+                throw new IOException("cannot create cache directory " + cacheDir);
+            }
+            builder.setResourceFactory(new FileResourceFactory(cacheDir));
+        }
+        LOG.debug("response cache {}, dir {}", cacheConfig, dir);
+        return builder;
+    }
+
+    private static JsonCodec newJsonCodec(String name) {
+        switch (name) {
+            case "org.json":
+                return OrgJsonCodec.INSTANCE;
+            case "streaming":
+                return StreamingJsonCodec.INSTANCE;
+            default:
+                try {
+                    return (JsonCodec) Class.forName(name).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException ex) {
+                    throw new IllegalArgumentException("invalid JSON codec " + name, ex);
+                }
+        }
+    }
+
+    private Resilience resilience(HttpUriRequest request) {
+        return this.resiliencePolicies.isEmpty() ? null : this.resilience.lookup(request.getURI().getPath());
+    }
+
+    private WebServiceCommunication transportOwner() {
+        return this.owner == null ? this : this.owner;
+    }
+
+    private String url(String endpoint, String params) {
+        boolean hasParams = !StringUtils.isBlank(params);
+        int paramsLength = hasParams ? params.length() + 1 : 0;
+        StringBuilder sb = new StringBuilder(this.baseUri.length() + endpoint.length() + paramsLength);
+        sb.append(this.baseUri).append(endpoint);
+        if (hasParams) {
+            sb.append('?').append(params);
+        }
+        return sb.toString();
+    }
+
+    private void prepare(HttpUriRequest request, RequestRecord record) {
+        this.addHeaders(request);
+        if (this.acceptEncoding != null && !request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, this.acceptEncoding);
+        }
+        ContentCompression.compress(request, record, this.requestCompression, this.requestCompressionThreshold);
     }
 
     private void addHeaders(HttpRequest request) {
-        this.headers.entrySet().forEach(header -> {
-            request.setHeader(header.getKey(), header.getValue());
-        });
+        for (Header header : this.headers.toHeaders()) {
+            if (!request.containsHeader(header.getName())) {
+                request.addHeader(header);
+            }
+        }
     }
 
     private HttpClientContext getHttpClientContext() {
         HttpClientContext context = HttpClientContext.create();
+        context.setCookieStore(this.cookieStore);
         if (this.userPassCredentialsProvider != null) {
             context.setCredentialsProvider(userPassCredentialsProvider);
             context.setAuthCache(authCache);
-            BasicScheme basicAuth = new BasicScheme();
-            context.setAttribute("preemptive-auth", basicAuth);
+            context.setAttribute("preemptive-auth", preemptiveScheme);
+        }
+        if (LOG.isTraceEnabled()) {
+            this.cookieStore.getCookies().forEach(c -> {
+                LOG.trace("outgoing {} {} {}", c.getName() + "=" + c.getValue(), c.getDomain(), c.getPath());
+            });
         }
-        this.cookieStore.getCookies().forEach(c -> {
-            LOG.trace("outgoing {} {} {}", c.getName() + "=" + c.getValue(), c.getDomain(), c.getPath());
-        });
         return context;
     }
 
-    private String check(CloseableHttpResponse response) throws IOException {
-        this.cookieStore.getCookies().forEach(c -> {
-            LOG.trace("incoming {} {} {}", c.getName() + "=" + c.getValue(), c.getDomain(), c.getPath());
-        });
+    private String check(HttpResponse response) throws IOException {
+        if (LOG.isTraceEnabled()) {
+            this.cookieStore.getCookies().forEach(c -> {
+                LOG.trace("incoming {} {} {}", c.getName() + "=" + c.getValue(), c.getDomain(), c.getPath());
+            });
+        }
 
         String res = "";
         if (response.getEntity() != null) {
@@ -1254,9 +2222,172 @@ public class WebServiceCommunication extends EntityCommunication {
         return res;
     }
 
+    private String execute(HttpUriRequest request, String requestId) throws IOException {
+        return this.executeResponse(request, requestId, STRING_CONSUMER);
+    }
+
+    private <T> T executeResponse(HttpUriRequest request, String requestId, ResponseConsumer<T> consumer)
+        throws IOException {
+        return this.executeResponse(request, requestId, consumer, true);
+    }
+
+    /**
+     * @param hedgeable false for streaming consumers, since a hedged request is buffered by the async client
+     */
+    private <T> T executeResponse(HttpUriRequest request, String requestId, ResponseConsumer<T> consumer,
+        boolean hedgeable) throws IOException {
+        Resilience r = this.resilience(request);
+        if (r == null) {
+            return this.executeOnce(request, requestId, consumer);
+        }
+        if (hedgeable && r.isHedged(request)) {
+            CompletableFuture<HttpResponse> future = r.executeAsync(request,
+                attempt -> this.executeOnceAsync(attempt, requestId));
+            try {
+                return consume(future.get(), consumer);
+            } catch (InterruptedException ex) {
+                future.cancel(false);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("request is interrupted");
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        ResponseConsumer<T> once = response -> {
+            try {
+                T result = consumer.consume(response);
+                EntityUtils.consume(response.getEntity());
+                return result;
+            } catch (IOException ex) {
+                throw new Resilience.ConsumerException(ex);
+            }
+        };
+        return r.execute(request, attempt -> this.executeOnce(attempt, requestId, once));
+    }
+
+    private <T> T executeOnce(HttpUriRequest request, String requestId, ResponseConsumer<T> consumer)
+        throws IOException {
+        RequestRecord record = new RequestRecord();
+        this.prepare(request, record);
+        WebServiceCommunication o = this.transportOwner();
+        if (o.http2 != null) {
+            try {
+                return consume(ContentCompression.decode(o.http2.execute(request, record, this.cookieStore), record),
+                    consumer);
+            } finally {
+                this.recordResponseTime(request, requestId, record);
+            }
+        }
+        HttpClientContext context = this.getHttpClientContext();
+        context.setAttribute(RequestRecord.CONTEXT_ATTRIBUTE, record);
+        CloseableHttpClient httpClient = this.owner == null ? this.client : o.sessionClient;
+        try (CloseableHttpResponse response = httpClient.execute(request, context)) {
+            if (LOG.isTraceEnabled()) {
+                this.cookieStore.getCookies().forEach(c -> {
+                    LOG.trace("incoming {} {} {}", c.getName() + "=" + c.getValue(), c.getDomain(), c.getPath());
+                });
+            }
+            if (this.owner == null && o.cacheStorage != null) {
+                o.cacheStats.record(HttpCacheContext.adapt(context).getCacheResponseStatus(), response);
+            }
+            return consume(ContentCompression.decode(response, record), consumer);
+        } finally {
+            this.recordResponseTime(request, requestId, record);
+        }
+    }
+
+    private void recordResponseTime(HttpUriRequest request, String requestId, RequestRecord record) {
+        record.markEnd();
+        this.responseTime.record(request.getMethod(), request.getURI().getPath(), requestId, record);
+    }
+
+    private HttpUriRequest newBatchRequest(BatchRequest br) throws UnsupportedEncodingException {
+        String url = this.url(br.getEndpoint(), br.getParams());
+        HttpUriRequest request;
+        switch (br.getMethod()) {
+            case GET:
+            case GET_JSONObject:
+            case GET_JSONArray:
+                request = new HttpGet(url);
+                break;
+            case HEAD:
+                request = new HttpHead(url);
+                break;
+            case POST:
+            case POST_JSONObject:
+                request = new HttpPost(url);
+                break;
+            case PUT:
+            case PUT_JSONObject:
+                request = new HttpPut(url);
+                break;
+            case DELETE:
+            case DELETE_JSONObject:
+                if (br.getBody() == null) {
+                    request = new HttpDelete(url);
+                } else {
+                    request = new HttpPost(url) {
+                        @Override
+                        public String getMethod() {
+                            return HttpDelete.METHOD_NAME;
+                        }
+                    };
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported method " + br.getMethod());
+        }
+        if (br.isJson()) {
+            request.setHeader(JSON_CONTENT_TYPE);
+        }
+        if (request instanceof HttpEntityEnclosingRequestBase) {
+            StringEntity entity = new StringEntity(br.getBody() == null ? "" : br.getBody());
+            entity.setContentType(br.isJson() ? ContentType.APPLICATION_JSON.getMimeType()
+                : ContentType.TEXT_PLAIN.getMimeType());
+            ((HttpEntityEnclosingRequestBase) request).setEntity(entity);
+        }
+        LOG.trace("{} {} {}", this.hashCode(), request.getMethod(), url);
+        return request;
+    }
+
+    private static BatchResult batchResult(int index, BatchRequest request, HttpResponse response, Throwable ex,
+        long startNanos, long elapsedNanos) {
+        if (ex != null) {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            return new BatchResult(index, request, 0, null, cause, startNanos, elapsedNanos, false);
+        }
+        int code = response.getStatusLine().getStatusCode();
+        String body = "";
+        try {
+            if (response.getEntity() != null) {
+                body = EntityUtils.toString(response.getEntity());
+            }
+        } catch (IOException | RuntimeException e) {
+            return new BatchResult(index, request, code, null, e, startNanos, elapsedNanos, false);
+        }
+        Throwable error = code < 200 || code >= 300 ? new WebServiceException(code, body) : null;
+        return new BatchResult(index, request, code, body, error, startNanos, elapsedNanos, false);
+    }
+
+    private String checkAsync(HttpResponse response) {
+        try {
+            return check(response);
+        } catch (IOException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
     private final TrustStrategy acceptingTrustStrategy = (X509Certificate[] certificate, String authType) -> true;
 
-    private final ConnectionKeepAliveStrategy keepAliveStrategy = (HttpResponse response, HttpContext context) -> {
+    private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = (HttpResponse response,
+        HttpContext context) -> {
         HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
         while (it.hasNext()) {
             HeaderElement he = it.nextElement();
@@ -1275,7 +2406,7 @@ public class WebServiceCommunication extends EntityCommunication {
 
     private final HttpRequestInterceptor preemptiveAuth = (final HttpRequest request, final HttpContext context) -> {
         AuthState authState = (AuthState) context.getAttribute(HttpClientContext.TARGET_AUTH_STATE);
-        if (authState.getAuthScheme() == null) {
+        if (authState != null && authState.getAuthScheme() == null) {
             AuthScheme authScheme = (AuthScheme) context.getAttribute("preemptive-auth");
             CredentialsProvider credsProvider = (CredentialsProvider) context.getAttribute(
                 HttpClientContext.CREDS_PROVIDER);
@@ -1304,10 +2435,79 @@ public class WebServiceCommunication extends EntityCommunication {
         return res;
     }
 
+    private static <T> T consume(HttpResponse response, ResponseConsumer<T> consumer) throws IOException {
+        int code = response.getStatusLine().getStatusCode();
+        if (code < 200 || code >= 300) {
+            String res = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+            LOG.warn("{}", response.getStatusLine());
+            throw new WebServiceException(code, res);
+        }
+        try {
+            return consumer.consume(response);
+        } finally {
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+    /**
+     * Closes a response without reading the rest of its body, the connection is closed instead of reused.
+     */
+    private static void abort(HttpResponse response) throws IOException {
+        if (response instanceof CloseableHttpResponse) {
+            ((CloseableHttpResponse) response).close();
+        }
+    }
+
+    private static InputStream contentOf(HttpEntity entity) throws IOException {
+        return entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+    }
+
+    private static Reader readerOf(HttpEntity entity) throws IOException {
+        Charset charset = null;
+        if (entity != null) {
+            ContentType ct = ContentType.get(entity);
+            if (ct != null) {
+                charset = ct.getCharset();
+            }
+        }
+        return new InputStreamReader(contentOf(entity), charset == null ? StandardCharsets.UTF_8 : charset);
+    }
+
+    @FunctionalInterface
+    private interface ResponseConsumer<T> {
+        T consume(HttpResponse response) throws IOException;
+    }
+
+    private static final ResponseConsumer<String> STRING_CONSUMER = response -> response.getEntity() == null
+        ? "" : EntityUtils.toString(response.getEntity());
+
+    private static CloseableHttpClient getUriClient(URL url) throws IOException {
+        String key = url.getProtocol() + "://" + url.getHost() + ":" + (url.getPort() == -1 ? url.getDefaultPort()
+            : url.getPort());
+        CloseableHttpClient c = URI_CLIENTS.get(key);
+        if (c != null) {
+            return c;
+        }
+        try {
+            return URI_CLIENTS.computeIfAbsent(key, k -> {
+                try {
+                    return newHttpClient(url);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
     private static CloseableHttpClient newHttpClient(URL url) throws IOException {
         HttpClientBuilder httpClientBuilder = HttpClients.custom()
             .setUserAgent(USER_AGENT)
-            .setDefaultRequestConfig(RequestConfig.custom().setCookieSpec(CookieSpecs.DEFAULT).build())
+            .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+            .evictExpiredConnections()
+            .evictIdleConnections(10, TimeUnit.SECONDS)
+            .disableCookieManagement()
             .setRedirectStrategy(new LaxRedirectStrategy());
 
         RegistryBuilder<ConnectionSocketFactory> registryBuilder = RegistryBuilder.<ConnectionSocketFactory>create()
@@ -1328,18 +2528,88 @@ public class WebServiceCommunication extends EntityCommunication {
         }
 
         Registry<ConnectionSocketFactory> socketFactoryRegistry = registryBuilder.build();
-        HttpClientConnectionManager cm = new BasicHttpClientConnectionManager(socketFactoryRegistry);
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        cm.setDefaultMaxPerRoute(20);
+        cm.setValidateAfterInactivity(5000);
         return httpClientBuilder.setConnectionManager(cm).build();
     }
 
+    private static class TimingRequestExecutor extends HttpRequestExecutor {
+        @Override
+        protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+            throws IOException, HttpException {
+            RequestRecord record = RequestRecord.of(context);
+            if (record != null) {
+                record.markSendStart();
+            }
+            return super.doSendRequest(request, conn, context);
+        }
+
+        @Override
+        protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+            throws HttpException, IOException {
+            HttpResponse response = super.doReceiveResponse(request, conn, context);
+            RequestRecord record = RequestRecord.of(context);
+            if (record != null) {
+                record.markHeadReceived();
+            }
+            return response;
+        }
+    }
+
+    private static class TimingPlainSocketFactory extends PlainConnectionSocketFactory {
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+            InetSocketAddress localAddress, HttpContext context) throws IOException {
+            RequestRecord record = RequestRecord.of(context);
+            if (record != null) {
+                record.markConnectStart();
+            }
+            return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+    }
+
+    private static class TimingSslSocketFactory extends SSLConnectionSocketFactory {
+        TimingSslSocketFactory(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+            super(sslContext, hostnameVerifier);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+            InetSocketAddress localAddress, HttpContext context) throws IOException {
+            RequestRecord record = RequestRecord.of(context);
+            if (record != null) {
+                record.markConnectStart();
+            }
+            return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+            throws IOException {
+            RequestRecord record = RequestRecord.of(context);
+            if (record != null) {
+                record.markTlsStart();
+            }
+            Socket sslSocket = super.createLayeredSocket(socket, target, port, context);
+            if (record != null) {
+                record.markTlsEnd();
+            }
+            return sslSocket;
+        }
+    }
+
     private static class IdleConnectionMonitorThread extends Thread {
-        private final HttpClientConnectionManager connMgr;
+        private final Runnable eviction;
+
+        private final long checkInterval;
 
         private volatile boolean shutdown;
 
-        public IdleConnectionMonitorThread(HttpClientConnectionManager connMgr) {
+        public IdleConnectionMonitorThread(Runnable eviction, long checkInterval) {
             super();
-            this.connMgr = connMgr;
+            this.eviction = eviction;
+            this.checkInterval = checkInterval;
         }
 
         @Override
@@ -1347,9 +2617,8 @@ public class WebServiceCommunication extends EntityCommunication {
             try {
                 while (!shutdown) {
                     synchronized (this) {
-                        wait(5000);
-                        connMgr.closeExpiredConnections();
-                        connMgr.closeIdleConnections(10, TimeUnit.SECONDS);
+                        wait(checkInterval);
+                        eviction.run();
                     }
                 }
             } catch (InterruptedException ex) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.IOException;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncRequestConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Counts a request in flight in {@link EndpointMetrics} from the time its head is received, so that the request is
+ * drained while its body is still being received. If the request is never handed to the endpoint handler, such as
+ * when the client goes away during upload, it is counted as aborted once the consumer is closed.
+ *
+ * @author linsong wang
+ */
+class CountingRequestConsumer implements HttpAsyncRequestConsumer<HttpRequest> {
+
+    private final HttpAsyncRequestConsumer<HttpRequest> consumer;
+
+    private final EndpointMetrics metrics;
+
+    private volatile boolean handedOver;
+
+    private volatile boolean closed;
+
+    CountingRequestConsumer(HttpAsyncRequestConsumer<HttpRequest> consumer, HttpRequest request,
+        EndpointMetrics metrics) {
+        this.consumer = consumer;
+        this.metrics = metrics;
+        metrics.received(request);
+    }
+
+    @Override
+    public void requestReceived(HttpRequest request) throws HttpException, IOException {
+        consumer.requestReceived(request);
+    }
+
+    @Override
+    public void consumeContent(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+        consumer.consumeContent(decoder, ioctrl);
+    }
+
+    @Override
+    public void requestCompleted(HttpContext context) {
+        consumer.requestCompleted(context);
+    }
+
+    @Override
+    public void failed(Exception ex) {
+        consumer.failed(ex);
+    }
+
+    @Override
+    public Exception getException() {
+        return consumer.getException();
+    }
+
+    @Override
+    public HttpRequest getResult() {
+        HttpRequest result = consumer.getResult();
+        if (result != null) {
+            handedOver = true;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isDone() {
+        return consumer.isDone();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            consumer.close();
+        } finally {
+            synchronized (this) {
+                if (!closed && !handedOver) {
+                    metrics.aborted();
+                }
+                closed = true;
+            }
+        }
+    }
+}
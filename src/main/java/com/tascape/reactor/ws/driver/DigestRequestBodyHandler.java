@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.apache.http.HttpRequest;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Hashes and discards request body, keeping only the digest and the size. Request entity is null, endpoint handlers
+ * read the result with {@link EndpointHandler#getRequestBodyHandler(HttpRequest)}.
+ *
+ * @author linsong wang
+ */
+public class DigestRequestBodyHandler implements RequestBodyHandler {
+
+    private final MessageDigest digest;
+
+    private long size;
+
+    private byte[] result;
+
+    /**
+     * @param algorithm message digest algorithm, such as SHA-256
+     *
+     * @throws NoSuchAlgorithmException if algorithm is not supported
+     */
+    public DigestRequestBodyHandler(String algorithm) throws NoSuchAlgorithmException {
+        this.digest = MessageDigest.getInstance(algorithm);
+    }
+
+    @Override
+    public void consume(ByteBuffer chunk, IOControl ioControl) {
+        size += chunk.remaining();
+        digest.update(chunk);
+    }
+
+    @Override
+    public void end() {
+        result = digest.digest();
+    }
+
+    /**
+     * @return digest of request body, or null if body is not fully received
+     */
+    public byte[] getDigest() {
+        return result == null ? null : result.clone();
+    }
+
+    /**
+     * @return digest of request body in lower case hex, or null if body is not fully received
+     */
+    public String getDigestHex() {
+        if (result == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(result.length * 2);
+        for (byte b : result) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
@@ -18,18 +18,27 @@ package com.tascape.reactor.ws.driver;
 
 import com.tascape.reactor.driver.EntityDriver;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.nio.protocol.BasicAsyncRequestConsumer;
 import org.apache.http.nio.protocol.BasicAsyncResponseProducer;
@@ -47,6 +56,16 @@ import org.slf4j.LoggerFactory;
 public abstract class EndpointHandler extends EntityDriver implements HttpAsyncRequestHandler<HttpRequest> {
     private static final Logger LOG = LoggerFactory.getLogger(EndpointHandler.class);
 
+    /**
+     * Context attribute of the {@link RequestBodyHandler} that consumed request body, if any.
+     */
+    public static final String REQUEST_BODY_HANDLER = "reactor.ws.request-body-handler";
+
+    /**
+     * Size of the buffer request body chunks are read into, when request body is streamed.
+     */
+    public static final int REQUEST_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Gets parameter value of request line.
      *
@@ -60,14 +79,34 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
     public static String getParameter(HttpRequest request, String name) throws URISyntaxException {
         NameValuePair nv = URLEncodedUtils.parse(new URI(request.getRequestLine().getUri()), Charset.defaultCharset()).stream()
             .filter(param -> param.getName().equals(name))
-            .findFirst().get();
+            .findFirst().orElse(null);
         if (nv == null) {
             return null;
         }
         return nv.getValue();
     }
 
-    protected final Set<ResponseUpdater> responseUpdaterSet = new HashSet<>();
+    private final Set<ResponseUpdater> responseUpdaters = new LinkedHashSet<>();
+
+    /**
+     * Registered response updaters, in registration order. Changes made through this set update the index too, same
+     * as {@link #addResponseUpdater(ResponseUpdater)} and {@link #removeResponseUpdater(ResponseUpdater)}.
+     */
+    protected final Set<ResponseUpdater> responseUpdaterSet = new ResponseUpdaterSet();
+
+    private volatile ResponseUpdaterIndex responseUpdaterIndex = ResponseUpdaterIndex.EMPTY;
+
+    private volatile FaultProfile faultProfile;
+
+    private final EndpointMetrics metrics = new EndpointMetrics();
+
+    private final Map<HttpRequest, RequestBodyHandler> requestBodyHandlers
+        = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Response updater found by {@link #dispatch(HttpRequest, HttpResponse)} on the current thread.
+     */
+    private static final ThreadLocal<ResponseUpdater> MATCHED = new ThreadLocal<>();
 
     /**
      * Gets the endpoint the class handles.
@@ -86,9 +125,56 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
         return "1.0.0";
     }
 
+    /**
+     * Gets a handler to stream body of the request, instead of buffering it in memory. Override this to handle large
+     * uploads, see {@link FileRequestBodyHandler} and {@link DigestRequestBodyHandler}. The handler is available to
+     * handlePost, etc., with {@link #getRequestBodyHandler(HttpRequest)}.
+     *
+     * @param request HTTP request head
+     *
+     * @return a new handler for the request, or null to buffer request body
+     */
+    protected RequestBodyHandler newRequestBodyHandler(HttpRequest request) {
+        return null;
+    }
+
     @Override
     public HttpAsyncRequestConsumer<HttpRequest> processRequest(HttpRequest hr, HttpContext hc) throws HttpException, IOException {
-        return new BasicAsyncRequestConsumer();
+        RequestBodyHandler handler = this.newRequestBodyHandler(hr);
+        HttpAsyncRequestConsumer<HttpRequest> consumer = handler == null ? new BasicAsyncRequestConsumer()
+            : new StreamingRequestConsumer(handler, REQUEST_BUFFER_SIZE);
+        return new CountingRequestConsumer(consumer, hr, metrics);
+    }
+
+    /**
+     * Gets the handler that consumed body of a request being handled, to read its result in handleGet, handlePost,
+     * etc., such as the digest and size of a {@link DigestRequestBodyHandler}.
+     *
+     * @param request HTTP request being handled
+     *
+     * @return request body handler from {@link #newRequestBodyHandler(HttpRequest)}, or null if request body is
+     *         buffered
+     */
+    protected RequestBodyHandler getRequestBodyHandler(HttpRequest request) {
+        return requestBodyHandlers.get(request);
+    }
+
+    /**
+     * Gets the executor to run handleGet/handlePost/... on. Override {@link #isBlocking()}, or this method for a
+     * custom executor, for handlers that touch disk, sleep, or call other services, so that I/O reactor threads are
+     * never blocked. The response is submitted once the handler returns. Requests rejected by the executor get 503.
+     *
+     * @return executor, or null to handle requests on I/O reactor thread
+     */
+    protected Executor getExecutor() {
+        return this.isBlocking() ? WorkerPool.getDefault() : null;
+    }
+
+    /**
+     * @return true to handle requests on the shared {@link WorkerPool}, default is false
+     */
+    protected boolean isBlocking() {
+        return false;
     }
 
     @Override
@@ -97,6 +183,133 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
         String method = request.getRequestLine().getMethod().toUpperCase();
         HttpResponse response = hae.getResponse();
         response.setStatusCode(HttpStatus.SC_OK);
+        long start = System.nanoTime();
+        RequestBodyHandler bodyHandler = (RequestBodyHandler) hc.getAttribute(REQUEST_BODY_HANDLER);
+        if (bodyHandler != null) {
+            requestBodyHandlers.put(request, bodyHandler);
+        }
+
+        Executor executor = this.getExecutor();
+        if (executor == null) {
+            ResponseUpdater matched;
+            try {
+                matched = this.handle(method, request, response);
+            } catch (HttpException | IOException | RuntimeException ex) {
+                metrics.failed(start);
+                throw ex;
+            } finally {
+                this.release(request, hc);
+            }
+            metrics.handled(start, false);
+            this.respond(hae, hc, response, matched);
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                ResponseUpdater matched = null;
+                try {
+                    matched = this.handle(method, request, response);
+                    metrics.handled(start, false);
+                } catch (HttpException | IOException | RuntimeException ex) {
+                    LOG.warn("Cannot handle request {}", request.getRequestLine(), ex);
+                    metrics.handled(start, true);
+                    response.setStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                    response.setEntity(new NStringEntity(String.valueOf(ex.getMessage()), ContentType.TEXT_PLAIN));
+                } finally {
+                    this.release(request, hc);
+                }
+                this.respond(hae, hc, response, matched);
+            });
+        } catch (RejectedExecutionException ex) {
+            LOG.debug("worker pool is full, reject {}", request.getRequestLine());
+            this.release(request, hc);
+            response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setEntity(new NStringEntity("server busy", ContentType.TEXT_PLAIN));
+            metrics.handled(start, false);
+            this.submit(hae, response);
+        }
+    }
+
+    /**
+     * Gets the latency and fault profile of this endpoint. Profile of the matching response updater, if any, takes
+     * precedence.
+     *
+     * @return fault profile, or null for none
+     */
+    public FaultProfile getFaultProfile() {
+        return faultProfile;
+    }
+
+    public void setFaultProfile(FaultProfile faultProfile) {
+        this.faultProfile = faultProfile;
+    }
+
+    /**
+     * @return request counters and handler latency of this endpoint
+     */
+    public EndpointMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void respond(HttpAsyncExchange hae, HttpContext hc, HttpResponse response, ResponseUpdater matched) {
+        FaultProfile fp = matched == null ? null : matched.getFaultProfile();
+        if (fp == null) {
+            fp = this.getFaultProfile();
+        }
+        if (fp == null) {
+            this.submit(hae, response);
+        } else {
+            fp.apply(response, hc, () -> this.submit(hae, response), metrics::aborted);
+        }
+    }
+
+    /**
+     * Submits a response, and counts it into metrics of this endpoint.
+     *
+     * @param hae      exchange of the request
+     * @param response HTTP response
+     */
+    void submit(HttpAsyncExchange hae, HttpResponse response) {
+        if (hae.isCompleted()) {
+            LOG.debug("exchange is already completed, response dropped");
+            metrics.aborted();
+            return;
+        }
+        try {
+            hae.submitResponse(new BasicAsyncResponseProducer(response));
+            metrics.completed(response);
+        } catch (IllegalStateException ex) {
+            LOG.debug("exchange is completed, response dropped, {}", ex.getMessage());
+            metrics.aborted();
+        }
+    }
+
+    private void release(HttpRequest request, HttpContext hc) {
+        requestBodyHandlers.remove(request);
+        RequestBodyHandler handler = (RequestBodyHandler) hc.getAttribute(REQUEST_BODY_HANDLER);
+        if (handler != null) {
+            handler.release();
+        }
+    }
+
+    /**
+     * @return response updater used, if any
+     */
+    private ResponseUpdater handle(String method, HttpRequest request, HttpResponse response)
+        throws HttpException, IOException {
+        MATCHED.remove();
+        try {
+            this.handleMethod(method, request, response);
+            return MATCHED.get();
+        } finally {
+            MATCHED.remove();
+        }
+    }
+
+    private void handleMethod(String method, HttpRequest request, HttpResponse response)
+        throws HttpException, IOException {
         switch (method) {
             case "GET":
                 this.handleGet(request, response);
@@ -110,15 +323,30 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
             case "DELETE":
                 this.handleDelete(request, response);
                 break;
+            default:
+                this.dispatch(request, response);
         }
-
-        hae.submitResponse(new BasicAsyncResponseProducer(response));
     }
 
     public void addResponseUpdater(ResponseUpdater updater) {
         this.responseUpdaterSet.add(updater);
     }
 
+    public void removeResponseUpdater(ResponseUpdater updater) {
+        this.responseUpdaterSet.remove(updater);
+    }
+
+    /**
+     * Replaces all response updaters at once. Requests in flight use either the old or the new ones, never a mix.
+     *
+     * @param updaters new response updaters, in priority order for the same priority
+     */
+    public synchronized void setResponseUpdaters(Collection<? extends ResponseUpdater> updaters) {
+        this.responseUpdaters.clear();
+        this.responseUpdaters.addAll(updaters);
+        this.responseUpdaterIndex = new ResponseUpdaterIndex(this.responseUpdaters);
+    }
+
     /**
      * Handles GET requests by calling response updater based on uri pattern.
      *
@@ -129,20 +357,11 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
      * @throws IOException   in case of IO related issue
      */
     public void handleGet(HttpRequest request, HttpResponse response) throws HttpException, IOException {
-        String uri = request.getRequestLine().getUri();
-        LOG.debug("uri {}", uri);
-        try {
-            ResponseUpdater ru = this.findResponseUpdater(request);
-            LOG.debug("request updater {}", ru);
-            ru.update(response);
-        } catch (IllegalStateException t) {
-            LOG.error("Cannot handle request", t);
-            throw new HttpException("Cannot handle request", t);
-        }
+        this.dispatch(request, response);
     }
 
     /**
-     * Handles POST requests.
+     * Handles POST requests by calling response updater based on uri pattern.
      *
      * @param request  HTTP request
      * @param response HTTP response
@@ -151,11 +370,11 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
      * @throws IOException   in case of IO related issue
      */
     public void handlePost(HttpRequest request, HttpResponse response) throws HttpException, IOException {
-        this.warn(response);
+        this.dispatch(request, response);
     }
 
     /**
-     * Handles PUT requests.
+     * Handles PUT requests by calling response updater based on uri pattern.
      *
      * @param request  HTTP request
      * @param response HTTP response
@@ -164,11 +383,11 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
      * @throws IOException   in case of IO related issue
      */
     public void handlePut(HttpRequest request, HttpResponse response) throws HttpException, IOException {
-        this.warn(response);
+        this.dispatch(request, response);
     }
 
     /**
-     * Handles DELETE requests.
+     * Handles DELETE requests by calling response updater based on uri pattern.
      *
      * @param request  HTTP request
      * @param response HTTP response
@@ -177,36 +396,114 @@ public abstract class EndpointHandler extends EntityDriver implements HttpAsyncR
      * @throws IOException   in case of IO related issue
      */
     public void handleDelete(HttpRequest request, HttpResponse response) throws HttpException, IOException {
-        this.warn(response);
+        this.dispatch(request, response);
     }
 
     @Override
-    public void reset() throws Exception {
+    public synchronized void reset() throws Exception {
         this.responseUpdaterSet.clear();
     }
 
     /**
-     * Finds the first ResponseUpdater by url pattern match.
+     * Updates response with the first matching response updater. Responds 501 if no response updater handles the
+     * method, or 404 if none matches the request.
      *
-     * @param request http request
-     *
-     * @return the corresponding ResponseUpdater
+     * @param request  HTTP request
+     * @param response HTTP response
      *
-     * @throws HttpException if no ResponseUpdater found
+     * @throws HttpException in case of HTTP related issue
+     * @throws IOException   in case of IO related issue
      */
-    private ResponseUpdater findResponseUpdater(final HttpRequest request) throws HttpException {
-        ResponseUpdater updater = this.responseUpdaterSet.stream()
-            .filter(ru -> ru.matches(request))
-            .findFirst().get();
-        if (updater == null) {
-            throw new HttpException("cannot find correpsonding response updater");
+    protected void dispatch(HttpRequest request, HttpResponse response) throws HttpException, IOException {
+        ResponseUpdaterIndex index = this.responseUpdaterIndex;
+        ResponseUpdater ru = index.find(request);
+        if (ru != null) {
+            LOG.debug("response updater {}", ru);
+            MATCHED.set(ru);
+            ru.update(response);
+        } else if (!index.supports(request.getRequestLine().getMethod())) {
+            LOG.debug("no response updater for method {}", request.getRequestLine().getMethod());
+            response.setStatusCode(HttpStatus.SC_NOT_IMPLEMENTED);
+            response.setEntity(new NStringEntity("not implemented"));
         } else {
-            return updater;
+            LOG.debug("no response updater for {}", request.getRequestLine());
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            response.setEntity(new NStringEntity("no response for " + request.getRequestLine().getUri()));
         }
     }
 
-    private void warn(HttpResponse response) throws UnsupportedEncodingException {
-        response.setEntity(new NStringEntity("not implemented yet"));
-        response.setStatusCode(5000);
+    /**
+     * Set of registered response updaters, which rebuilds the index on each change.
+     */
+    private final class ResponseUpdaterSet extends AbstractSet<ResponseUpdater> {
+
+        @Override
+        public Iterator<ResponseUpdater> iterator() {
+            Iterator<ResponseUpdater> it = responseUpdaters.iterator();
+            return new Iterator<ResponseUpdater>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public ResponseUpdater next() {
+                    return it.next();
+                }
+
+                @Override
+                public void remove() {
+                    synchronized (EndpointHandler.this) {
+                        it.remove();
+                        ResponseUpdaterSet.this.reindex();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return responseUpdaters.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return responseUpdaters.contains(o);
+        }
+
+        @Override
+        public boolean add(ResponseUpdater updater) {
+            synchronized (EndpointHandler.this) {
+                boolean changed = responseUpdaters.add(updater);
+                if (changed) {
+                    this.reindex();
+                }
+                return changed;
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            synchronized (EndpointHandler.this) {
+                boolean changed = responseUpdaters.remove(o);
+                if (changed) {
+                    this.reindex();
+                }
+                return changed;
+            }
+        }
+
+        @Override
+        public void clear() {
+            synchronized (EndpointHandler.this) {
+                responseUpdaters.clear();
+                this.reindex();
+            }
+        }
+
+        private void reindex() {
+            responseUpdaterIndex = responseUpdaters.isEmpty() ? ResponseUpdaterIndex.EMPTY
+                : new ResponseUpdaterIndex(responseUpdaters);
+        }
     }
 }
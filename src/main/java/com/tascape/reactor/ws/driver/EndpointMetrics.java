@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import com.tascape.reactor.ws.comm.LatencyHistogram;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.json.JSONObject;
+
+/**
+ * Lock-free request counters and handler latency of one endpoint. Latency is measured from the time a request is
+ * handed to the endpoint handler, until its response is ready to submit, not including injected faults. Responses are
+ * counted by the status actually submitted, after the fault profile is applied, and injected connection resets are
+ * counted as aborted.
+ *
+ * @author linsong wang
+ */
+public class EndpointMetrics {
+
+    static final String[] STATUS_CLASSES = {"other", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final LongAdder[] responses = new LongAdder[STATUS_CLASSES.length];
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder aborted = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LongAdder bytesIn = new LongAdder();
+
+    private final LongAdder bytesOut = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public EndpointMetrics() {
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a request in flight, from the time its head is received, so that its body is still being received.
+     *
+     * @param request HTTP request, request body size is taken from Content-Length header
+     */
+    void received(HttpRequest request) {
+        inFlight.increment();
+        Header cl = request.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        if (cl != null) {
+            try {
+                bytesIn.add(Long.parseLong(cl.getValue().trim()));
+            } catch (NumberFormatException ex) {
+                // ignore malformed content length
+            }
+        }
+    }
+
+    /**
+     * Records handler latency of a request, its response is counted when submitted.
+     *
+     * @param start time in nanosecond the handler is called
+     * @param error true if the handler failed with an exception
+     */
+    void handled(long start, boolean error) {
+        latency.record(System.nanoTime() - start);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Counts a response that is submitted.
+     *
+     * @param response HTTP response, response body size is counted when known
+     */
+    void completed(HttpResponse response) {
+        inFlight.decrement();
+        int status = response.getStatusLine().getStatusCode() / 100;
+        responses[status > 0 && status < STATUS_CLASSES.length ? status : 0].increment();
+        HttpEntity entity = response.getEntity();
+        if (entity != null && entity.getContentLength() > 0) {
+            bytesOut.add(entity.getContentLength());
+        }
+    }
+
+    /**
+     * Counts a request that failed with an exception in endpoint handler, and is answered with 500 by the service.
+     *
+     * @param start time in nanosecond the handler is called
+     */
+    void failed(long start) {
+        this.handled(start, true);
+        inFlight.decrement();
+        responses[5].increment();
+    }
+
+    /**
+     * Counts a request whose connection is reset, or whose exchange is over, without a response, including requests
+     * whose body cannot be received.
+     */
+    void aborted() {
+        inFlight.decrement();
+        aborted.increment();
+    }
+
+    /**
+     * @param statusClass 1 for 1xx, 2 for 2xx, ..., 5 for 5xx, 0 for anything else
+     *
+     * @return number of responses of the status class
+     */
+    public long getResponses(int statusClass) {
+        return responses[statusClass].sum();
+    }
+
+    /**
+     * @return total number of responses
+     */
+    public long getRequests() {
+        long total = 0;
+        for (LongAdder r : responses) {
+            total += r.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return number of requests failed with an exception in endpoint handler
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return number of requests without response, because of injected connection resets or closed connections
+     */
+    public long getAborted() {
+        return aborted.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public void reset() {
+        for (LongAdder r : responses) {
+            r.reset();
+        }
+        errors.reset();
+        aborted.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+        latency.reset();
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        JSONObject status = new JSONObject();
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            status.put(STATUS_CLASSES[i], responses[i].sum());
+        }
+        JSONObject ms = new JSONObject()
+            .put("count", latency.getCount())
+            .put("mean", latency.getMean() / 1_000_000)
+            .put("p50", latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS) / 1000.0)
+            .put("p90", latency.getValueAtPercentile(90, TimeUnit.MICROSECONDS) / 1000.0)
+            .put("p99", latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS) / 1000.0)
+            .put("max", latency.getMax() / 1_000_000.0);
+        return json
+            .put("requests", this.getRequests())
+            .put("responses", status)
+            .put("errors", errors.sum())
+            .put("aborted", aborted.sum())
+            .put("in_flight", inFlight.sum())
+            .put("bytes_in", bytesIn.sum())
+            .put("bytes_out", bytesOut.sum())
+            .put("latency_ms", ms);
+    }
+}
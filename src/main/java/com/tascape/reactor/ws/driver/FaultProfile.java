@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.reactor.SocketAccessor;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Declarative latency and fault profile of a simulated endpoint, or of a response updater. Responses are delayed by
+ * scheduling their submission, and throttled by pausing output, so that I/O reactor threads are never blocked.
+ * <pre>
+ * new FaultProfile()
+ *     .withLatency(LatencyDistribution.logNormal(20, 250))
+ *     .withErrorRate(0.01, 503)
+ *     .withResetRate(0.001)
+ *     .withBandwidth(256 * 1024);
+ * </pre>
+ *
+ * @author linsong wang
+ */
+public class FaultProfile {
+    private static final Logger LOG = LoggerFactory.getLogger(FaultProfile.class);
+
+    private static final ScheduledExecutorService SCHEDULER;
+
+    static {
+        ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "ws-fault-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        stpe.setRemoveOnCancelPolicy(true);
+        SCHEDULER = stpe;
+    }
+
+    private LatencyDistribution latency;
+
+    private double errorRate;
+
+    private int errorStatus = HttpStatus.SC_SERVICE_UNAVAILABLE;
+
+    private double resetRate;
+
+    private int chunkSize;
+
+    private long chunkIntervalMillis;
+
+    /**
+     * @param latency distribution of time before response head is sent
+     *
+     * @return this profile
+     */
+    public FaultProfile withLatency(LatencyDistribution latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * @param rate   ratio of requests answered with error, between 0 and 1
+     * @param status HTTP status code of error responses, such as 500 or 503
+     *
+     * @return this profile
+     */
+    public FaultProfile withErrorRate(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /**
+     * @param rate ratio of requests answered with a TCP reset instead of a response, between 0 and 1
+     *
+     * @return this profile
+     */
+    public FaultProfile withResetRate(double rate) {
+        this.resetRate = rate;
+        return this;
+    }
+
+    /**
+     * Limits the rate response body is sent at, per response.
+     *
+     * @param bytesPerSecond bandwidth
+     *
+     * @return this profile
+     */
+    public FaultProfile withBandwidth(int bytesPerSecond) {
+        return this.withSlowDrip(Math.max(1, bytesPerSecond / 20), 50);
+    }
+
+    /**
+     * Sends response body a few bytes at a time, with a pause after each chunk.
+     *
+     * @param chunkSize      bytes per chunk
+     * @param intervalMillis pause after each chunk in millisecond
+     *
+     * @return this profile
+     */
+    public FaultProfile withSlowDrip(int chunkSize, long intervalMillis) {
+        this.chunkSize = chunkSize;
+        this.chunkIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * Applies this profile to a handled response, and submits it, or resets the connection.
+     *
+     * @param response handled response
+     * @param context  HTTP context of the exchange
+     * @param submit   submits the response
+     * @param abort    called after the connection is reset instead
+     */
+    void apply(HttpResponse response, HttpContext context, Runnable submit, Runnable abort) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latency == null ? 0 : Math.max(0, latency.nextMillis(random));
+        Runnable action;
+        if (resetRate > 0 && random.nextDouble() < resetRate) {
+            action = () -> {
+                reset(context);
+                abort.run();
+            };
+        } else {
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                response.setStatusCode(errorStatus);
+                response.setEntity(new NStringEntity("simulated fault", ContentType.TEXT_PLAIN));
+            }
+            HttpEntity entity = response.getEntity();
+            if (chunkSize > 0 && entity != null) {
+                response.setEntity(new ThrottledEntity(entity, chunkSize, chunkIntervalMillis, SCHEDULER));
+            }
+            action = submit;
+        }
+        if (delay > 0) {
+            SCHEDULER.schedule(action, delay, TimeUnit.MILLISECONDS);
+        } else {
+            action.run();
+        }
+    }
+
+    private static void reset(HttpContext context) {
+        NHttpConnection conn = (NHttpConnection) context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+        if (conn == null) {
+            return;
+        }
+        try {
+            if (conn instanceof SocketAccessor) {
+                Socket socket = ((SocketAccessor) conn).getSocket();
+                if (socket != null) {
+                    socket.setSoLinger(true, 0);
+                }
+            }
+            conn.shutdown();
+            LOG.debug("simulated connection reset");
+        } catch (IOException ex) {
+            LOG.debug("cannot reset connection, {}", ex.getMessage());
+        }
+    }
+}
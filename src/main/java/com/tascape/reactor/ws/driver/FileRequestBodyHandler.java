@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.nio.IOControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spills request body into a temporary file. The request entity is then a {@link FileEntity} of the file, which is
+ * deleted once the request is handled.
+ *
+ * @author linsong wang
+ */
+public class FileRequestBodyHandler implements RequestBodyHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(FileRequestBodyHandler.class);
+
+    private final Path dir;
+
+    private Path file;
+
+    private FileChannel channel;
+
+    private ContentType contentType;
+
+    private long size;
+
+    /**
+     * @param dir directory of temporary files, or null for system temporary directory
+     */
+    public FileRequestBodyHandler(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public void begin(HttpRequest request, ContentType contentType) throws IOException {
+        this.contentType = contentType;
+        this.file = dir == null ? Files.createTempFile("ws-upload-", ".tmp")
+            : Files.createTempFile(dir, "ws-upload-", ".tmp");
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        LOG.debug("spill request body into {}", file);
+    }
+
+    @Override
+    public void consume(ByteBuffer chunk, IOControl ioControl) throws IOException {
+        while (chunk.hasRemaining()) {
+            size += channel.write(chunk);
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public HttpEntity getEntity() {
+        return file == null ? null : new FileEntity(file.toFile(), contentType);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public void release() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ex) {
+            LOG.warn("cannot delete {}", file, ex);
+        }
+    }
+}
@@ -16,7 +16,6 @@
  */
 package com.tascape.reactor.ws.driver;
 
-import com.tascape.reactor.ws.comm.WebServiceCommunication;
 import com.tascape.reactor.SystemConfiguration;
 import com.tascape.reactor.driver.EntityDriver;
 import java.io.IOException;
@@ -26,22 +25,39 @@ import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.http.Header;
 import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.config.ConnectionConfig;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.nio.DefaultHttpServerIODispatch;
 import org.apache.http.impl.nio.DefaultNHttpServerConnection;
 import org.apache.http.impl.nio.DefaultNHttpServerConnectionFactory;
-import org.apache.http.impl.nio.reactor.AbstractMultiworkerIOReactor;
 import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.nio.NHttpConnectionFactory;
+import org.apache.http.nio.NHttpServerConnection;
+import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.nio.protocol.HttpAsyncService;
 import org.apache.http.nio.protocol.UriHttpAsyncRequestHandlerMapper;
 import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.ListenerEndpoint;
 import org.apache.http.nio.reactor.ListeningIOReactor;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpProcessor;
 import org.apache.http.protocol.HttpProcessorBuilder;
 import org.apache.http.protocol.ResponseConnControl;
@@ -62,13 +78,91 @@ public final class GenericWebService extends EntityDriver {
 
     public static final int XONSTANT_PORT = 10080;
 
+    /**
+     * Number of I/O dispatch threads, default is number of processors
+     */
+    public static final String SYSPROP_IO_THREADS = "reactor.driver.ws.GWS_IO_THREADS";
+
+    /**
+     * Socket read timeout in millisecond, 0 for no timeout, default is 30000
+     */
+    public static final String SYSPROP_SO_TIMEOUT = "reactor.driver.ws.GWS_SO_TIMEOUT";
+
+    /**
+     * Connect timeout in millisecond, default is 0
+     */
+    public static final String SYSPROP_CONNECT_TIMEOUT = "reactor.driver.ws.GWS_CONNECT_TIMEOUT";
+
+    /**
+     * Listen backlog, 0 for system default
+     */
+    public static final String SYSPROP_BACKLOG = "reactor.driver.ws.GWS_BACKLOG";
+
+    /**
+     * SO_RCVBUF in bytes, 0 for system default
+     */
+    public static final String SYSPROP_RCV_BUF = "reactor.driver.ws.GWS_RCV_BUF";
+
+    /**
+     * SO_SNDBUF in bytes, 0 for system default
+     */
+    public static final String SYSPROP_SND_BUF = "reactor.driver.ws.GWS_SND_BUF";
+
+    /**
+     * TCP_NODELAY, default is true
+     */
+    public static final String SYSPROP_TCP_NODELAY = "reactor.driver.ws.GWS_TCP_NODELAY";
+
+    /**
+     * SO_KEEPALIVE, default is false
+     */
+    public static final String SYSPROP_SO_KEEPALIVE = "reactor.driver.ws.GWS_SO_KEEPALIVE";
+
+    /**
+     * SO_REUSEADDR, default is true
+     */
+    public static final String SYSPROP_SO_REUSEADDR = "reactor.driver.ws.GWS_SO_REUSEADDR";
+
+    /**
+     * Session buffer size of each connection in bytes, default is 8192
+     */
+    public static final String SYSPROP_BUFFER_SIZE = "reactor.driver.ws.GWS_BUFFER_SIZE";
+
+    /**
+     * Time in millisecond {@link #stop()} waits for in-flight requests to complete, default is 5000
+     */
+    public static final String SYSPROP_DRAIN_TIMEOUT = "reactor.driver.ws.GWS_DRAIN_TIMEOUT";
+
+    /**
+     * Directory of declarative stub definitions, watched for changes, see {@link StubLoader}
+     */
+    public static final String SYSPROP_STUB_DIR = "reactor.driver.ws.GWS_STUB_DIR";
+
     private final int port;
 
     private final UriHttpAsyncRequestHandlerMapper reqistry;
 
     private final HttpAsyncService protocolHandler;
 
-    private ListeningIOReactor ioReactor;
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    private volatile ListeningIOReactor ioReactor;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final AtomicBoolean stopping = new AtomicBoolean();
+
+    private volatile boolean draining;
+
+    private volatile InetSocketAddress address;
+
+    private final CompletableFuture<InetSocketAddress> ready = new CompletableFuture<>();
+
+    private final CompletableFuture<Void> terminated = new CompletableFuture<>();
+
+    private final CompletableFuture<Boolean> stopped = new CompletableFuture<>();
+
+    private Thread shutdownHook;
 
     /**
      * Server port is read from system property reactor.driver.ws.GWS_PORT. Default value is 10080.
@@ -77,6 +171,9 @@ public final class GenericWebService extends EntityDriver {
         this(SystemConfiguration.getInstance().getIntProperty(SYSPROP_PORT, XONSTANT_PORT));
     }
 
+    /**
+     * @param port server port, 0 for an ephemeral port, see {@link #getPort()}
+     */
     public GenericWebService(int port) {
         this.port = port;
 
@@ -85,79 +182,258 @@ public final class GenericWebService extends EntityDriver {
             .add(new ResponseDate())
             .add(new ResponseServer(GenericWebService.class.getName()))
             .add(new ResponseContent())
+            .add((HttpResponse response, HttpContext context) -> {
+                if (draining) {
+                    response.setHeader(HTTP.CONN_DIRECTIVE, HTTP.CONN_CLOSE);
+                }
+            })
             .add(new ResponseConnControl()).build();
 
         LOG.info("Create request handler registry");
         reqistry = new UriHttpAsyncRequestHandlerMapper();
-        protocolHandler = new HttpAsyncService(httpProcessor, reqistry);
+        protocolHandler = new HttpAsyncService(httpProcessor, reqistry) {
+            @Override
+            public void connected(NHttpServerConnection conn) {
+                metrics.connectionOpened();
+                super.connected(conn);
+            }
+
+            @Override
+            public void closed(NHttpServerConnection conn) {
+                metrics.connectionClosed();
+                super.closed(conn);
+            }
+        };
     }
 
+    /**
+     * Starts the service, and blocks until it is stopped.
+     *
+     * @throws Exception in case of any issue
+     */
     public void start() throws Exception {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("service is already started");
+        }
         LOG.info("Register shutdown handler, GET http://localhost:{}/shutdown to shutdown this service", port);
         this.registerResponseSimulator(shutdownHandler);
+        LOG.info("Register metrics handler, GET http://localhost:{}/metrics for Prometheus text format, or "
+            + "/metrics?format=json", port);
+        this.registerResponseSimulator(metricsHandler);
 
         LOG.info("Create server-side HTTP protocol handler");
+        SystemConfiguration sysConfig = SystemConfiguration.getInstance();
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setBufferSize(sysConfig.getIntProperty(SYSPROP_BUFFER_SIZE, 8 * 1024))
+            .build();
         NHttpConnectionFactory<DefaultNHttpServerConnection> connFactory
-            = new DefaultNHttpServerConnectionFactory(ConnectionConfig.DEFAULT);
+            = new DefaultNHttpServerConnectionFactory(connectionConfig);
         IOEventDispatch ioEventDispatch = new DefaultHttpServerIODispatch(protocolHandler, connFactory);
         IOReactorConfig config = IOReactorConfig.custom()
-            .setIoThreadCount(8)
-            .setSoTimeout(300)
-            .setConnectTimeout(300)
+            .setIoThreadCount(sysConfig.getIntProperty(SYSPROP_IO_THREADS, Runtime.getRuntime().availableProcessors()))
+            .setSoTimeout(sysConfig.getIntProperty(SYSPROP_SO_TIMEOUT, 30000))
+            .setConnectTimeout(sysConfig.getIntProperty(SYSPROP_CONNECT_TIMEOUT, 0))
+            .setBacklogSize(sysConfig.getIntProperty(SYSPROP_BACKLOG, 0))
+            .setRcvBufSize(sysConfig.getIntProperty(SYSPROP_RCV_BUF, 0))
+            .setSndBufSize(sysConfig.getIntProperty(SYSPROP_SND_BUF, 0))
+            .setTcpNoDelay(Boolean.parseBoolean(sysConfig.getProperty(SYSPROP_TCP_NODELAY, "true")))
+            .setSoKeepAlive(Boolean.parseBoolean(sysConfig.getProperty(SYSPROP_SO_KEEPALIVE, "false")))
+            .setSoReuseAddress(Boolean.parseBoolean(sysConfig.getProperty(SYSPROP_SO_REUSEADDR, "true")))
             .build();
+        LOG.info("I/O reactor {}, {}", config, connectionConfig);
 
         LOG.info("Create server-side I/O reactor");
-        ioReactor = new DefaultListeningIOReactor(config);
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            @Override
-            public void run() {
+        DefaultListeningIOReactor reactor = new DefaultListeningIOReactor(config);
+        metrics.setReactorExceptions(() -> reactor.getAuditLog().size());
+        ioReactor = reactor;
+        synchronized (this) {
+            shutdownHook = new Thread(() -> {
                 try {
-                    ioReactor.shutdown(100);
-                    LOG.info("Service shutdown");
+                    GenericWebService.this.stop();
                 } catch (IOException ex) {
                     LOG.error("", ex);
                 }
-            }
-        });
+            }, "gws-shutdown-" + port);
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
 
         try {
             SocketAddress socketAddress = new InetSocketAddress(this.port);
-            ioReactor.listen(socketAddress);
-            LOG.info("Service is ready");
-            ioReactor.execute(ioEventDispatch);
+            ListenerEndpoint endpoint = reactor.listen(socketAddress);
+            Thread listener = new Thread(() -> this.awaitListener(endpoint), "gws-listener-" + port);
+            listener.setDaemon(true);
+            listener.start();
+            reactor.execute(ioEventDispatch);
         } catch (InterruptedIOException ex) {
             LOG.error("Interrupted", ex);
         } catch (IOException ex) {
             LOG.error("I/O error: ", ex);
+            ready.completeExceptionally(ex);
         } finally {
-            if (ioReactor instanceof AbstractMultiworkerIOReactor) {
-                AbstractMultiworkerIOReactor amior = (AbstractMultiworkerIOReactor) ioReactor;
-                amior.getAuditLog().stream().forEach(ex -> LOG.warn(ex.getTimestamp() + " - {}", ex.getCause()));
+            reactor.getAuditLog().stream().forEach(ex -> LOG.warn(ex.getTimestamp() + " - {}", ex.getCause()));
+            ready.completeExceptionally(new IOException("service is stopped before it is ready"));
+            terminated.complete(null);
+            LOG.info("Service shutdown");
+        }
+    }
+
+    /**
+     * Starts the service on a new thread.
+     *
+     * @return a future completed with the bound address once the service accepts connections, or completed
+     *         exceptionally if the service cannot listen on the port
+     */
+    public CompletableFuture<InetSocketAddress> startAsync() {
+        new Thread(() -> {
+            try {
+                GenericWebService.this.start();
+            } catch (Exception ex) {
+                LOG.error("Cannot start service", ex);
+                ready.completeExceptionally(ex);
             }
+        }, "gws-" + port).start();
+        return ready.copy();
+    }
+
+    /**
+     * Gets the port the service listens on.
+     *
+     * @return the bound port once the service is ready, which is the actual port when created with port 0,
+     *         otherwise the configured port
+     */
+    public int getPort() {
+        InetSocketAddress a = address;
+        return a == null ? port : a.getPort();
+    }
+
+    /**
+     * Stops the service gracefully, waits up to reactor.driver.ws.GWS_DRAIN_TIMEOUT for in-flight requests.
+     *
+     * @throws IOException in case of I/O reactor issue
+     */
+    public void stop() throws IOException {
+        this.stop(SystemConfiguration.getInstance().getIntProperty(SYSPROP_DRAIN_TIMEOUT, 5000), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the service gracefully. New connections are refused right away, responses of in-flight requests are
+     * sent with Connection: close, then I/O reactor is shut down once all in-flight requests complete or the timeout
+     * expires, whichever comes first. Blocks until the service is terminated. Calling this on a service not started
+     * is a no-op; later calls wait for the first one, and return its result.
+     *
+     * @param timeout drain timeout
+     * @param unit    time unit of timeout
+     *
+     * @return true if all in-flight requests completed before the timeout
+     *
+     * @throws IOException in case of I/O reactor issue
+     */
+    public boolean stop(long timeout, TimeUnit unit) throws IOException {
+        ListeningIOReactor reactor = ioReactor;
+        if (reactor == null) {
+            return true;
+        }
+        if (!stopping.compareAndSet(false, true)) {
+            try {
+                return stopped.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for service to stop");
+            } catch (ExecutionException ex) {
+                throw new IOException("cannot stop service", ex.getCause());
+            }
+        }
+        try {
+            boolean drained = this.drain(reactor, unit.toNanos(timeout));
+            stopped.complete(drained);
+            return drained;
+        } catch (IOException | RuntimeException ex) {
+            stopped.completeExceptionally(ex);
+            throw ex;
         }
     }
 
-    public void startAsync() throws Exception {
-        new Thread() {
-            @Override
-            public void run() {
-                try {
-                    GenericWebService.this.start();
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
+    private boolean drain(ListeningIOReactor reactor, long timeout) throws IOException {
+        long deadline = System.nanoTime() + timeout;
+        LOG.info("Drain service on port {}, {} request(s) in flight", this.getPort(), metrics.getInFlight());
+        draining = true;
+        reactor.getEndpoints().forEach(ListenerEndpoint::close);
+
+        boolean drained = true;
+        try {
+            while (metrics.getInFlight() > 0) {
+                if (System.nanoTime() - deadline > 0) {
+                    LOG.warn("Drain timeout, {} request(s) still in flight", metrics.getInFlight());
+                    drained = false;
+                    break;
                 }
+                Thread.sleep(10);
             }
-        }.start();
+            reactor.shutdown(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            terminated.get(Math.max(1000, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())),
+                TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while stopping service");
+        } catch (ExecutionException | TimeoutException ex) {
+            LOG.warn("Service is not terminated, {}", ex.toString());
+        }
+        synchronized (this) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ex) {
+                LOG.trace("JVM is shutting down, {}", ex.getMessage());
+            }
+        }
+        return drained;
     }
 
-    public void stop() throws IOException {
-        WebServiceCommunication.getUri("http://localhost:" + port + shutdownHandler.getEndpoint());
+    /**
+     * Stops the service on a new thread, see {@link #stop()}.
+     *
+     * @return a future completed once the service is terminated
+     */
+    public CompletableFuture<Void> stopAsync() {
+        new Thread(() -> {
+            try {
+                GenericWebService.this.stop();
+            } catch (IOException ex) {
+                LOG.error("Cannot stop service", ex);
+            }
+        }, "gws-stop-" + port).start();
+        return terminated.copy();
+    }
+
+    /**
+     * @return a future completed once I/O reactor is terminated
+     */
+    public CompletableFuture<Void> getTermination() {
+        return terminated.copy();
+    }
+
+    private void awaitListener(ListenerEndpoint endpoint) {
+        try {
+            endpoint.waitFor();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            ready.completeExceptionally(ex);
+            return;
+        }
+        if (endpoint.getException() != null) {
+            LOG.error("Cannot listen on port {}", port, endpoint.getException());
+            ready.completeExceptionally(endpoint.getException());
+        } else if (endpoint.getAddress() != null) {
+            address = (InetSocketAddress) endpoint.getAddress();
+            LOG.info("Service is ready on port {}", address.getPort());
+            ready.complete(address);
+        }
     }
 
     public void registerResponseSimulator(EndpointHandler simulator)
         throws InstantiationException, IllegalAccessException {
         LOG.info("Register handler for endpoint {}: {}", simulator.getEndpoint(), simulator.getName());
         reqistry.register(simulator.getEndpoint(), simulator);
+        metrics.register(simulator);
     }
 
     public void registerResponseSimulator(String clazz)
@@ -165,6 +441,34 @@ public final class GenericWebService extends EntityDriver {
         InvocationTargetException {
         EndpointHandler simulator = (EndpointHandler) Class.forName(clazz).getDeclaredConstructor().newInstance();
         reqistry.register(simulator.getEndpoint(), simulator);
+        metrics.register(simulator);
+    }
+
+    /**
+     * Serves declarative stubs of a directory for all endpoints not handled by other handlers, and reloads them on
+     * any change.
+     *
+     * @param dir stub directory
+     *
+     * @return the stub loader, close it to stop watching
+     *
+     * @throws IOException if stubs cannot be loaded
+     */
+    public StubLoader registerStubs(Path dir) throws IOException {
+        StubEndpointHandler handler = new StubEndpointHandler();
+        StubLoader loader = new StubLoader(dir);
+        loader.watch(handler);
+        LOG.info("Register stubs of {} for endpoint {}", dir, handler.getEndpoint());
+        reqistry.register(handler.getEndpoint(), handler);
+        metrics.register(handler);
+        return loader;
+    }
+
+    /**
+     * @return connection counters and metrics of all registered endpoints, also served on /metrics
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -201,7 +505,7 @@ public final class GenericWebService extends EntityDriver {
         @Override
         public void handleGet(HttpRequest request, HttpResponse response) throws HttpException, IOException {
             LOG.debug("received shutdown call");
-            ioReactor.shutdown();
+            GenericWebService.this.stopAsync();
         }
 
         @Override
@@ -225,9 +529,59 @@ public final class GenericWebService extends EntityDriver {
         }
     };
 
+    private final EndpointHandler metricsHandler = new EndpointHandler() {
+        @Override
+        public String getEndpoint() {
+            return "/metrics";
+        }
+
+        @Override
+        public void handleGet(HttpRequest request, HttpResponse response) throws HttpException, IOException {
+            Header accept = request.getFirstHeader(HttpHeaders.ACCEPT);
+            boolean json;
+            try {
+                json = "json".equals(getParameter(request, "format"))
+                    || accept != null && accept.getValue().contains(ContentType.APPLICATION_JSON.getMimeType());
+            } catch (URISyntaxException ex) {
+                throw new HttpException(ex.getMessage(), ex);
+            }
+            if (json) {
+                response.setEntity(new NStringEntity(metrics.toJson().toString(), ContentType.APPLICATION_JSON));
+            } else {
+                response.setEntity(new NStringEntity(metrics.toPrometheus(),
+                    ContentType.create("text/plain", StandardCharsets.UTF_8).withParameters(
+                        new BasicNameValuePair("version", "0.0.4"))));
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "MetricsService";
+        }
+
+        @Override
+        public void handlePost(HttpRequest request, HttpResponse response) throws HttpException, IOException {
+            response.setStatusCode(HttpStatus.SC_METHOD_NOT_ALLOWED);
+        }
+
+        @Override
+        public void handlePut(HttpRequest request, HttpResponse response) throws HttpException, IOException {
+            response.setStatusCode(HttpStatus.SC_METHOD_NOT_ALLOWED);
+        }
+
+        @Override
+        public void handleDelete(HttpRequest request, HttpResponse response) throws HttpException, IOException {
+            response.setStatusCode(HttpStatus.SC_METHOD_NOT_ALLOWED);
+        }
+    };
+
     public static void main(String[] args) {
         GenericWebService gws = new GenericWebService();
         try {
+            String stubDir = SystemConfiguration.getInstance().getProperty(SYSPROP_STUB_DIR);
+            if (stubDir != null) {
+                gws.registerStubs(Paths.get(stubDir));
+            }
             gws.start();
         } catch (Exception ex) {
             LOG.error("Cannot start service", ex);
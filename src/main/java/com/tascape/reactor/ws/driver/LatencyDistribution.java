@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of simulated server latency.
+ *
+ * @author linsong wang
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * @param random random source
+     *
+     * @return next latency in millisecond
+     */
+    long nextMillis(ThreadLocalRandom random);
+
+    /**
+     * @param millis latency in millisecond
+     *
+     * @return distribution of a fixed latency
+     */
+    static LatencyDistribution fixed(long millis) {
+        return random -> millis;
+    }
+
+    /**
+     * @param minMillis min latency in millisecond
+     * @param maxMillis max latency in millisecond
+     *
+     * @return uniform distribution
+     */
+    static LatencyDistribution uniform(long minMillis, long maxMillis) {
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("max latency is less than min latency");
+        }
+        return random -> minMillis + random.nextLong(maxMillis - minMillis + 1);
+    }
+
+    /**
+     * Log-normal distribution, which is typical for service latency, with a long tail.
+     *
+     * @param medianMillis median latency in millisecond
+     * @param p99Millis    99th percentile latency in millisecond
+     *
+     * @return log-normal distribution
+     */
+    static LatencyDistribution logNormal(double medianMillis, double p99Millis) {
+        if (!(medianMillis > 0) || p99Millis < medianMillis) {
+            throw new IllegalArgumentException("invalid median or p99 latency");
+        }
+        double mu = Math.log(medianMillis);
+        double sigma = (Math.log(p99Millis) - mu) / 2.326348;
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * Replays latency percentiles observed in production, interpolating linearly between them. For example,
+     * percentiles {0, 50, 90, 99, 100} with latency {5, 20, 80, 300, 1000}.
+     *
+     * @param percentiles ascending percentiles, from 0 to 100
+     * @param millis      latency in millisecond at each percentile
+     *
+     * @return empirical distribution
+     */
+    static LatencyDistribution percentiles(double[] percentiles, long[] millis) {
+        if (percentiles.length != millis.length || percentiles.length < 2 || percentiles[0] != 0
+            || percentiles[percentiles.length - 1] != 100) {
+            throw new IllegalArgumentException("percentiles must start at 0, end at 100, and match latency values");
+        }
+        double[] ps = percentiles.clone();
+        long[] ms = millis.clone();
+        return random -> {
+            double p = random.nextDouble() * 100;
+            int i = Arrays.binarySearch(ps, p);
+            if (i >= 0) {
+                return ms[i];
+            }
+            int hi = -i - 1;
+            int lo = hi - 1;
+            double f = (p - ps[lo]) / (ps[hi] - ps[lo]);
+            return Math.round(ms[lo] + f * (ms[hi] - ms[lo]));
+        };
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * Non-blocking entity of a byte buffer, such as a memory-mapped file. The buffer is shared, and is not copied into
+ * heap; each entity writes from its own view of the buffer.
+ *
+ * @author linsong wang
+ */
+public class NByteBufferEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+    private final ByteBuffer content;
+
+    private ByteBuffer view;
+
+    /**
+     * @param content     body between position and limit, not modified by this entity
+     * @param contentType content type, or null
+     */
+    public NByteBufferEntity(ByteBuffer content, ContentType contentType) {
+        this.content = content.asReadOnlyBuffer();
+        if (contentType != null) {
+            this.setContentType(contentType.toString());
+        }
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+        if (view == null) {
+            view = content.duplicate();
+        }
+        encoder.write(view);
+        if (!view.hasRemaining()) {
+            encoder.complete();
+        }
+    }
+
+    @Override
+    public void close() {
+        view = null;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return content.remaining();
+    }
+
+    @Override
+    public InputStream getContent() {
+        ByteBuffer buf = content.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!buf.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, buf.remaining());
+                buf.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return buf.remaining();
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        Channels.newChannel(outstream).write(content.duplicate());
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import com.tascape.reactor.ws.comm.WebServiceCommunication;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forwards requests to a real web service through a {@link WebServiceCommunication}, without blocking I/O reactor,
+ * and optionally records request and response pairs into a {@link TrafficRecording}. Redirects are passed through to
+ * the client, and each request uses a new session, so that cookies of different clients are not mixed.
+ * <p>
+ * To replay, load the recording into a {@link StubEndpointHandler}:
+ * <pre>
+ * handler.setResponseUpdaters(TrafficRecording.toRules(TrafficRecording.read(file)));
+ * </pre>
+ *
+ * @author linsong wang
+ */
+public class ProxyEndpointHandler extends EndpointHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(ProxyEndpointHandler.class);
+
+    private static final RequestConfig NO_REDIRECT = RequestConfig.custom().setRedirectsEnabled(false).build();
+
+    private final String endpoint;
+
+    private final WebServiceCommunication target;
+
+    private final String targetUri;
+
+    private final TrafficRecording recording;
+
+    /**
+     * @param endpoint  endpoint pattern, such as "/api/*", or "*" for all
+     * @param target    connected communication of the real web service
+     * @param recording recording to append traffic to, or null
+     */
+    public ProxyEndpointHandler(String endpoint, WebServiceCommunication target, TrafficRecording recording) {
+        this.endpoint = endpoint;
+        this.target = target;
+        this.targetUri = target.getHttpHost().toURI();
+        this.recording = recording;
+    }
+
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public void handle(HttpRequest request, HttpAsyncExchange hae, HttpContext hc) throws HttpException, IOException {
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        String method = request.getRequestLine().getMethod();
+        String uri = request.getRequestLine().getUri();
+        if (!uri.startsWith("/")) {
+            String path = ResponseUpdaterIndex.pathOf(uri);
+            int query = uri.indexOf('?');
+            uri = query < 0 ? path : path + uri.substring(query);
+        }
+
+        RequestBuilder builder = RequestBuilder.create(method).setUri(targetUri + uri).setConfig(NO_REDIRECT);
+        List<Map.Entry<String, String>> requestHeaders = new ArrayList<>();
+        for (Header h : request.getAllHeaders()) {
+            if (!TrafficRecording.isSkipped(h.getName()) && !HttpHeaders.HOST.equalsIgnoreCase(h.getName())) {
+                builder.addHeader(h);
+                requestHeaders.add(new AbstractMap.SimpleImmutableEntry<>(h.getName(), h.getValue()));
+            }
+        }
+        byte[] requestBody = new byte[0];
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                requestBody = EntityUtils.toByteArray(entity);
+                builder.setEntity(new ByteArrayEntity(requestBody));
+            }
+        }
+        HttpUriRequest forward = builder.build();
+        LOG.debug("forward {} {}", method, forward.getURI());
+
+        String recordUri = uri;
+        byte[] recordBody = requestBody;
+        target.newSession().executeAsync(forward, null).whenComplete((res, ex) -> {
+            HttpResponse response = hae.getResponse();
+            try {
+                if (ex != null) {
+                    LOG.warn("cannot forward {} {}, {}", method, forward.getURI(), ex.getMessage());
+                    response.setStatusCode(HttpStatus.SC_BAD_GATEWAY);
+                    response.setEntity(new NStringEntity(String.valueOf(ex.getMessage()), ContentType.TEXT_PLAIN));
+                } else {
+                    byte[] body = res.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(res.getEntity());
+                    // status only, target may answer over HTTP/2 while client is on HTTP/1.1
+                    response.setStatusCode(res.getStatusLine().getStatusCode());
+                    response.setReasonPhrase(res.getStatusLine().getReasonPhrase());
+                    List<Map.Entry<String, String>> responseHeaders = new ArrayList<>();
+                    for (Header h : res.getAllHeaders()) {
+                        if (!TrafficRecording.isSkipped(h.getName())) {
+                            response.addHeader(h);
+                            responseHeaders.add(new AbstractMap.SimpleImmutableEntry<>(h.getName(), h.getValue()));
+                        }
+                    }
+                    if (body.length > 0) {
+                        response.setEntity(new NByteArrayEntity(body));
+                    }
+                    this.record(new TrafficRecord(timestamp, method, recordUri, requestHeaders, recordBody,
+                        res.getStatusLine().getStatusCode(), responseHeaders, body));
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("cannot relay response of {} {}", method, forward.getURI(), e);
+                response.setStatusCode(HttpStatus.SC_BAD_GATEWAY);
+            }
+            this.getMetrics().handled(start, false);
+            this.submit(hae, response);
+        });
+    }
+
+    private void record(TrafficRecord record) {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.append(record);
+        } catch (IOException ex) {
+            LOG.warn("cannot record {}", record, ex);
+        }
+    }
+}
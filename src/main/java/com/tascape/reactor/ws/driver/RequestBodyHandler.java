@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Receives request body chunk by chunk, as they are read by I/O reactor, so that large uploads are processed in
+ * constant memory. Methods are called on an I/O reactor thread, and should not block for long. A new instance is used
+ * for each request, see {@link EndpointHandler#newRequestBodyHandler(HttpRequest)}.
+ *
+ * @author linsong wang
+ */
+public interface RequestBodyHandler {
+
+    /**
+     * Called before any content, for requests that enclose a body.
+     *
+     * @param request     HTTP request head
+     * @param contentType request content type, or null if not specified
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    default void begin(HttpRequest request, ContentType contentType) throws IOException {
+    }
+
+    /**
+     * Consumes a chunk of request body. The buffer is reused after this call returns. To apply backpressure, call
+     * {@link IOControl#suspendInput()}, no more chunk is delivered until {@link IOControl#requestInput()} is called.
+     *
+     * @param chunk     body bytes, between position and limit
+     * @param ioControl I/O control of the connection
+     *
+     * @throws IOException in case of any IO related issue, the request fails
+     */
+    void consume(ByteBuffer chunk, IOControl ioControl) throws IOException;
+
+    /**
+     * Called after the last chunk.
+     *
+     * @throws IOException in case of any IO related issue
+     */
+    default void end() throws IOException {
+    }
+
+    /**
+     * Gets the entity set on the request after body is consumed, such as the file a body spills into.
+     *
+     * @return request entity, or null for none
+     */
+    default HttpEntity getEntity() {
+        return null;
+    }
+
+    /**
+     * Releases resources, called once the request is handled or failed.
+     */
+    default void release() {
+    }
+}
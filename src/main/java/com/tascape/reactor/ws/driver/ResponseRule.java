@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * Declarative response updater, matched by method, path template, query parameters and request headers.
+ * <pre>
+ * handler.addResponseUpdater(new ResponseRule("GET", "/users/{id}")
+ *     .withQuery("verbose", "true")
+ *     .withHeader("Accept", "application/json")
+ *     .withPriority(10)
+ *     .withResponse(200, "{\"id\":1}", ContentType.APPLICATION_JSON));
+ * </pre>
+ *
+ * @author linsong wang
+ */
+public class ResponseRule implements ResponseUpdater {
+
+    private final String method;
+
+    private final String pathTemplate;
+
+    private final Map<String, String> queries = new LinkedHashMap<>();
+
+    private final Map<String, String> headers = new LinkedHashMap<>();
+
+    private int priority;
+
+    private int status = HttpStatus.SC_OK;
+
+    private StaticResponse body;
+
+    private Header[] responseHeaders = new Header[0];
+
+    private Consumer<HttpResponse> updater;
+
+    private FaultProfile faultProfile;
+
+    /**
+     * @param method       HTTP method, or null for any method
+     * @param pathTemplate path, or path template such as "/users/{id}", or null for any path
+     */
+    public ResponseRule(String method, String pathTemplate) {
+        this.method = method;
+        this.pathTemplate = pathTemplate;
+    }
+
+    /**
+     * Requires a query parameter.
+     *
+     * @param name  parameter name
+     * @param value parameter value, or null to require the parameter only
+     *
+     * @return this rule
+     */
+    public ResponseRule withQuery(String name, String value) {
+        this.queries.put(name, value);
+        return this;
+    }
+
+    /**
+     * Requires a request header, name is case-insensitive.
+     *
+     * @param name  header name
+     * @param value header value, or null to require the header only
+     *
+     * @return this rule
+     */
+    public ResponseRule withHeader(String name, String value) {
+        this.headers.put(name, value);
+        return this;
+    }
+
+    public ResponseRule withPriority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Sets canned response.
+     *
+     * @param status      HTTP status code
+     * @param body        response body, or null for no body
+     * @param contentType response content type
+     *
+     * @return this rule
+     */
+    public ResponseRule withResponse(int status, String body, ContentType contentType) {
+        this.status = status;
+        this.body = body == null ? null : StaticResponse.of(body, contentType);
+        return this;
+    }
+
+    /**
+     * Sets canned response with a static body, such as a file.
+     *
+     * @param status HTTP status code
+     * @param body   response body, or null for no body
+     *
+     * @return this rule
+     */
+    public ResponseRule withResponse(int status, StaticResponse body) {
+        this.status = status;
+        this.body = body;
+        return this;
+    }
+
+    /**
+     * Adds a response header.
+     *
+     * @param name  header name
+     * @param value header value
+     *
+     * @return this rule
+     */
+    public ResponseRule withResponseHeader(String name, String value) {
+        Header[] hs = new Header[responseHeaders.length + 1];
+        System.arraycopy(responseHeaders, 0, hs, 0, responseHeaders.length);
+        hs[responseHeaders.length] = new BasicHeader(name, value);
+        this.responseHeaders = hs;
+        return this;
+    }
+
+    /**
+     * Sets custom response update, called after canned status, headers and body are set.
+     *
+     * @param updater updates response
+     *
+     * @return this rule
+     */
+    public ResponseRule withResponse(Consumer<HttpResponse> updater) {
+        this.updater = updater;
+        return this;
+    }
+
+    /**
+     * Sets latency and fault profile of responses of this rule.
+     *
+     * @param faultProfile fault profile
+     *
+     * @return this rule
+     */
+    public ResponseRule withFault(FaultProfile faultProfile) {
+        this.faultProfile = faultProfile;
+        return this;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPathTemplate() {
+        return pathTemplate;
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public FaultProfile getFaultProfile() {
+        return faultProfile;
+    }
+
+    @Override
+    public boolean matches(HttpRequest request) {
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            Header h = request.getFirstHeader(e.getKey());
+            if (h == null || (e.getValue() != null && !e.getValue().equals(h.getValue()))) {
+                return false;
+            }
+        }
+        if (queries.isEmpty()) {
+            return true;
+        }
+        List<NameValuePair> params;
+        try {
+            params = URLEncodedUtils.parse(new URI(request.getRequestLine().getUri()), StandardCharsets.UTF_8);
+        } catch (URISyntaxException ex) {
+            return false;
+        }
+        for (Map.Entry<String, String> e : queries.entrySet()) {
+            boolean found = params.stream().anyMatch(nv -> nv.getName().equals(e.getKey())
+                && (e.getValue() == null || e.getValue().equals(nv.getValue())));
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void update(HttpResponse response) {
+        response.setStatusCode(status);
+        for (Header h : responseHeaders) {
+            response.setHeader(h);
+        }
+        if (body != null) {
+            body.update(response);
+        }
+        if (updater != null) {
+            updater.accept(response);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (method == null ? "*" : method) + " " + (pathTemplate == null ? "*" : pathTemplate) + " " + queries
+            + " " + headers + " -> " + status;
+    }
+}
@@ -20,6 +20,9 @@ import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 
 /**
+ * Canned response of an endpoint handler. Method, path template and priority are used to index updaters, see
+ * {@link ResponseUpdaterIndex}, and {@link #matches(HttpRequest)} is only called on updaters of matching method and
+ * path.
  *
  * @author Linsong Wang
  */
@@ -28,4 +31,38 @@ public interface ResponseUpdater {
     public boolean matches(HttpRequest request);
 
     public void update(HttpResponse response);
+
+    /**
+     * Gets HTTP method this updater handles. Default is GET, the only method updaters handled before they were
+     * indexed by method, so that an updater without method does not answer POST, PUT or DELETE.
+     *
+     * @return HTTP method, or null for any method
+     */
+    default String getMethod() {
+        return "GET";
+    }
+
+    /**
+     * Gets path this updater handles, either a literal path, or a template with variable segments, such as
+     * "/users/{id}/orders" or "/users/&#42;/orders".
+     *
+     * @return path template, or null for any path
+     */
+    default String getPathTemplate() {
+        return null;
+    }
+
+    /**
+     * @return priority, updaters of higher priority are checked first, then in the order of registration
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * @return latency and fault profile of responses of this updater, or null to use the one of endpoint handler
+     */
+    default FaultProfile getFaultProfile() {
+        return null;
+    }
 }
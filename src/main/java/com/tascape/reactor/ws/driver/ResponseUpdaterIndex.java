@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.apache.http.HttpRequest;
+
+/**
+ * Immutable index of response updaters. Updaters are looked up by method and path first, with a hash map for literal
+ * paths and a segment tree for path templates, such as "/users/{id}". Only the few candidates found are checked with
+ * {@link ResponseUpdater#matches(HttpRequest)}, in order of priority, then of registration.
+ * <p>
+ * Updaters without method match any method, and updaters without path template match any path.
+ *
+ * @author linsong wang
+ */
+public final class ResponseUpdaterIndex {
+
+    public static final ResponseUpdaterIndex EMPTY = new ResponseUpdaterIndex(Collections.emptyList());
+
+    private static final String ANY = "*";
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt((Entry e) -> -e.priority)
+        .thenComparingInt(e -> e.seq);
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    private final Set<String> methods = new HashSet<>();
+
+    private final int size;
+
+    /**
+     * @param updaters response updaters in registration order
+     */
+    public ResponseUpdaterIndex(Collection<? extends ResponseUpdater> updaters) {
+        int seq = 0;
+        for (ResponseUpdater ru : updaters) {
+            String method = ru.getMethod() == null ? ANY : ru.getMethod().toUpperCase(Locale.ROOT);
+            methods.add(method);
+            buckets.computeIfAbsent(method, m -> new Bucket()).add(new Entry(ru, seq++), ru.getPathTemplate());
+        }
+        buckets.values().forEach(Bucket::sort);
+        this.size = seq;
+    }
+
+    /**
+     * Finds the first response updater of the highest priority that matches the request.
+     *
+     * @param request HTTP request
+     *
+     * @return the response updater, or null if none matches
+     */
+    public ResponseUpdater find(HttpRequest request) {
+        String method = request.getRequestLine().getMethod().toUpperCase(Locale.ROOT);
+        String path = pathOf(request.getRequestLine().getUri());
+        Entry best = null;
+        best = this.find(buckets.get(method), path, request, best);
+        best = this.find(buckets.get(ANY), path, request, best);
+        return best == null ? null : best.updater;
+    }
+
+    /**
+     * @param method HTTP method
+     *
+     * @return true if any response updater accepts the method
+     */
+    public boolean supports(String method) {
+        return methods.contains(ANY) || methods.contains(method.toUpperCase(Locale.ROOT));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private Entry find(Bucket bucket, String path, HttpRequest request, Entry best) {
+        if (bucket == null) {
+            return best;
+        }
+        best = first(bucket.literals.get(path), request, best);
+        if (!bucket.templates.isEmpty()) {
+            List<List<Entry>> found = new ArrayList<>(2);
+            bucket.templates.collect(segmentsOf(path), 0, found);
+            for (List<Entry> entries : found) {
+                best = first(entries, request, best);
+            }
+        }
+        return first(bucket.anyPath, request, best);
+    }
+
+    /**
+     * Gets the first matching entry of a sorted list, if it comes before the best so far.
+     */
+    private static Entry first(List<Entry> entries, HttpRequest request, Entry best) {
+        if (entries == null) {
+            return best;
+        }
+        for (Entry e : entries) {
+            if (best != null && ORDER.compare(e, best) >= 0) {
+                return best;
+            }
+            if (e.updater.matches(request)) {
+                return e;
+            }
+        }
+        return best;
+    }
+
+    static String pathOf(String uri) {
+        int start = 0;
+        int scheme = uri.indexOf("://");
+        if (scheme > 0 && scheme < uri.indexOf('/')) {
+            start = uri.indexOf('/', scheme + 3);
+            if (start < 0) {
+                return "/";
+            }
+        }
+        int end = uri.length();
+        for (int i = start; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+            }
+        }
+        return uri.substring(start, end);
+    }
+
+    private static String[] segmentsOf(String path) {
+        return (path.startsWith("/") ? path.substring(1) : path).split("/", -1);
+    }
+
+    private static boolean isVariable(String segment) {
+        return ANY.equals(segment) || (segment.startsWith("{") && segment.endsWith("}"));
+    }
+
+    private static final class Entry {
+        private final ResponseUpdater updater;
+
+        private final int priority;
+
+        private final int seq;
+
+        private Entry(ResponseUpdater updater, int seq) {
+            this.updater = updater;
+            this.priority = updater.getPriority();
+            this.seq = seq;
+        }
+    }
+
+    private static final class Bucket {
+        private final Map<String, List<Entry>> literals = new HashMap<>();
+
+        private final Node templates = new Node();
+
+        private final List<Entry> anyPath = new ArrayList<>();
+
+        private void add(Entry entry, String template) {
+            if (template == null) {
+                anyPath.add(entry);
+                return;
+            }
+            String[] segments = segmentsOf(template);
+            boolean literal = true;
+            for (String s : segments) {
+                literal &= !isVariable(s);
+            }
+            if (literal) {
+                literals.computeIfAbsent(template, t -> new ArrayList<>()).add(entry);
+            } else {
+                templates.add(segments, 0, entry);
+            }
+        }
+
+        private void sort() {
+            literals.values().forEach(entries -> entries.sort(ORDER));
+            templates.sort();
+            anyPath.sort(ORDER);
+        }
+    }
+
+    /**
+     * Node of path template tree, one level per path segment.
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+
+        private Node variable;
+
+        private List<Entry> entries;
+
+        boolean isEmpty() {
+            return children.isEmpty() && variable == null && entries == null;
+        }
+
+        private void add(String[] segments, int i, Entry entry) {
+            if (i == segments.length) {
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                }
+                entries.add(entry);
+                return;
+            }
+            Node child;
+            if (isVariable(segments[i])) {
+                if (variable == null) {
+                    variable = new Node();
+                }
+                child = variable;
+            } else {
+                child = children.computeIfAbsent(segments[i], s -> new Node());
+            }
+            child.add(segments, i + 1, entry);
+        }
+
+        private void collect(String[] segments, int i, List<List<Entry>> found) {
+            if (i == segments.length) {
+                if (entries != null) {
+                    found.add(entries);
+                }
+                return;
+            }
+            Node child = children.get(segments[i]);
+            if (child != null) {
+                child.collect(segments, i + 1, found);
+            }
+            if (variable != null && !segments[i].isEmpty()) {
+                variable.collect(segments, i + 1, found);
+            }
+        }
+
+        private void sort() {
+            if (entries != null) {
+                entries.sort(ORDER);
+            }
+            children.values().forEach(Node::sort);
+            if (variable != null) {
+                variable.sort();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import com.tascape.reactor.ws.comm.LatencyHistogram;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.json.JSONObject;
+
+/**
+ * Server-wide metrics of {@link GenericWebService}, connection counters plus {@link EndpointMetrics} of all
+ * registered endpoint handlers. Exported as Prometheus text format, or as JSON.
+ *
+ * @author linsong wang
+ */
+public class ServerMetrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final Map<String, EndpointHandler> handlers = new ConcurrentSkipListMap<>();
+
+    private final LongAdder connectionsActive = new LongAdder();
+
+    private final LongAdder connectionsTotal = new LongAdder();
+
+    private volatile LongSupplier reactorExceptions = () -> 0;
+
+    void register(EndpointHandler handler) {
+        handlers.put(handler.getEndpoint(), handler);
+    }
+
+    void connectionOpened() {
+        connectionsActive.increment();
+        connectionsTotal.increment();
+    }
+
+    void connectionClosed() {
+        connectionsActive.decrement();
+    }
+
+    void setReactorExceptions(LongSupplier reactorExceptions) {
+        this.reactorExceptions = reactorExceptions;
+    }
+
+    public long getConnectionsActive() {
+        return connectionsActive.sum();
+    }
+
+    public long getConnectionsTotal() {
+        return connectionsTotal.sum();
+    }
+
+    /**
+     * @return number of exceptions in the audit log of I/O reactor
+     */
+    public long getReactorExceptions() {
+        return reactorExceptions.getAsLong();
+    }
+
+    /**
+     * Gets metrics of an endpoint.
+     *
+     * @param endpoint endpoint pattern the handler is registered with
+     *
+     * @return endpoint metrics, or null if there is no such endpoint
+     */
+    public EndpointMetrics getEndpointMetrics(String endpoint) {
+        EndpointHandler handler = handlers.get(endpoint);
+        return handler == null ? null : handler.getMetrics();
+    }
+
+    /**
+     * @return number of requests being handled by all endpoints
+     */
+    public long getInFlight() {
+        long total = 0;
+        for (EndpointHandler handler : handlers.values()) {
+            total += handler.getMetrics().getInFlight();
+        }
+        return total;
+    }
+
+    public JSONObject toJson() {
+        JSONObject endpoints = new JSONObject();
+        handlers.forEach((endpoint, handler) -> endpoints.put(endpoint, handler.getMetrics().toJson()));
+        return new JSONObject()
+            .put("uptime_ms", System.currentTimeMillis() - startMillis)
+            .put("connections_active", connectionsActive.sum())
+            .put("connections_total", connectionsTotal.sum())
+            .put("reactor_exceptions", this.getReactorExceptions())
+            .put("endpoints", endpoints);
+    }
+
+    /**
+     * @return metrics in Prometheus text exposition format 0.0.4
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        metric(sb, "gws_uptime_seconds", "gauge", "Seconds since the service was created");
+        sb.append("gws_uptime_seconds ").append((System.currentTimeMillis() - startMillis) / 1000.0).append('\n');
+        metric(sb, "gws_connections_active", "gauge", "Open client connections");
+        sb.append("gws_connections_active ").append(connectionsActive.sum()).append('\n');
+        metric(sb, "gws_connections_total", "counter", "Accepted client connections");
+        sb.append("gws_connections_total ").append(connectionsTotal.sum()).append('\n');
+        metric(sb, "gws_reactor_exceptions", "gauge", "Exceptions in I/O reactor audit log");
+        sb.append("gws_reactor_exceptions ").append(this.getReactorExceptions()).append('\n');
+
+        metric(sb, "gws_requests_total", "counter", "Responses by endpoint and status class");
+        handlers.forEach((endpoint, handler) -> {
+            for (int i = 0; i < EndpointMetrics.STATUS_CLASSES.length; i++) {
+                sb.append("gws_requests_total{endpoint=\"").append(escape(endpoint)).append("\",status=\"")
+                    .append(EndpointMetrics.STATUS_CLASSES[i]).append("\"} ")
+                    .append(handler.getMetrics().getResponses(i)).append('\n');
+            }
+        });
+        metric(sb, "gws_request_errors_total", "counter", "Requests failed with an exception in endpoint handler");
+        handlers.forEach((endpoint, handler) -> sample(sb, "gws_request_errors_total", endpoint,
+            handler.getMetrics().getErrors()));
+        metric(sb, "gws_requests_aborted_total", "counter", "Requests without response, such as injected resets");
+        handlers.forEach((endpoint, handler) -> sample(sb, "gws_requests_aborted_total", endpoint,
+            handler.getMetrics().getAborted()));
+        metric(sb, "gws_requests_in_flight", "gauge", "Requests being handled");
+        handlers.forEach((endpoint, handler) -> sample(sb, "gws_requests_in_flight", endpoint,
+            handler.getMetrics().getInFlight()));
+        metric(sb, "gws_request_bytes_total", "counter", "Request body bytes, by Content-Length");
+        handlers.forEach((endpoint, handler) -> sample(sb, "gws_request_bytes_total", endpoint,
+            handler.getMetrics().getBytesIn()));
+        metric(sb, "gws_response_bytes_total", "counter", "Response body bytes, of known length");
+        handlers.forEach((endpoint, handler) -> sample(sb, "gws_response_bytes_total", endpoint,
+            handler.getMetrics().getBytesOut()));
+
+        metric(sb, "gws_request_duration_seconds", "summary", "Endpoint handler latency");
+        handlers.forEach((endpoint, handler) -> {
+            LatencyHistogram h = handler.getMetrics().getLatency();
+            String e = escape(endpoint);
+            for (double q : QUANTILES) {
+                sb.append("gws_request_duration_seconds{endpoint=\"").append(e).append("\",quantile=\"").append(q)
+                    .append("\"} ").append(h.getValueAtPercentile(q * 100, TimeUnit.NANOSECONDS) / 1e9)
+                    .append('\n');
+            }
+            sb.append("gws_request_duration_seconds_sum{endpoint=\"").append(e).append("\"} ")
+                .append(h.getSum() / 1e9).append('\n');
+            sb.append("gws_request_duration_seconds_count{endpoint=\"").append(e).append("\"} ")
+                .append(h.getCount()).append('\n');
+        });
+        return sb.toString();
+    }
+
+    private static void metric(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String endpoint, long value) {
+        sb.append(name).append("{endpoint=\"").append(escape(endpoint)).append("\"} ").append(value).append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NFileEntity;
+
+/**
+ * Static response body, prepared once and served many times with almost no allocation or copying per request.
+ * <ul>
+ * <li>{@link #of(String, ContentType)} and {@link #of(byte[], ContentType)} share one pre-encoded byte array</li>
+ * <li>{@link #ofFile(Path, ContentType)} sends file with {@link FileChannel#transferTo}, straight from page cache to
+ * socket on plain connections</li>
+ * <li>{@link #ofMappedFile(Path, ContentType)} maps file into memory once, and writes the mapped buffer</li>
+ * </ul>
+ *
+ * @author linsong wang
+ */
+public final class StaticResponse {
+
+    private final Supplier<HttpEntity> entities;
+
+    private final long contentLength;
+
+    private StaticResponse(Supplier<HttpEntity> entities, long contentLength) {
+        this.entities = entities;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * @param body        body, encoded once with charset of content type, or UTF-8
+     * @param contentType content type
+     *
+     * @return static response body
+     */
+    public static StaticResponse of(String body, ContentType contentType) {
+        Charset charset = contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+        return of(body.getBytes(charset), contentType);
+    }
+
+    /**
+     * @param body        body, shared and not copied, must not be modified afterwards
+     * @param contentType content type
+     *
+     * @return static response body
+     */
+    public static StaticResponse of(byte[] body, ContentType contentType) {
+        return new StaticResponse(() -> new NByteArrayEntity(body, contentType), body.length);
+    }
+
+    /**
+     * @param file        file, read on each request
+     * @param contentType content type
+     *
+     * @return static response body
+     */
+    public static StaticResponse ofFile(Path file, ContentType contentType) {
+        File f = file.toFile();
+        return new StaticResponse(() -> new NFileEntity(f, contentType, true), f.length());
+    }
+
+    /**
+     * @param file        file, mapped read-only into memory now, up to 2 GB
+     * @param contentType content type
+     *
+     * @return static response body
+     *
+     * @throws IOException if file cannot be mapped
+     */
+    public static StaticResponse ofMappedFile(Path file, ContentType contentType) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        }
+        return new StaticResponse(() -> new NByteBufferEntity(mapped, contentType), mapped.remaining());
+    }
+
+    /**
+     * @return a new entity of this body, cheap to create
+     */
+    public HttpEntity newEntity() {
+        return entities.get();
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Sets this body as response entity.
+     *
+     * @param response HTTP response
+     */
+    public void update(HttpResponse response) {
+        response.setEntity(entities.get());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncRequestConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Request consumer that passes body to a {@link RequestBodyHandler} through one fixed-size buffer, instead of buffering
+ * the whole body in memory. Each input event reads at most one buffer, so a slow handler slows down reading from the
+ * socket, and TCP flow control pushes back on the client.
+ *
+ * @author linsong wang
+ */
+public class StreamingRequestConsumer extends AbstractAsyncRequestConsumer<HttpRequest> {
+
+    private final RequestBodyHandler handler;
+
+    private final ByteBuffer buffer;
+
+    private HttpRequest request;
+
+    private boolean begun;
+
+    private boolean ended;
+
+    private boolean completed;
+
+    /**
+     * @param handler    handler of request body
+     * @param bufferSize size of the buffer chunks are read into
+     */
+    public StreamingRequestConsumer(RequestBodyHandler handler, int bufferSize) {
+        this.handler = handler;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    @Override
+    protected void onRequestReceived(HttpRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+        handler.begin(request, contentType);
+        begun = true;
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+        buffer.clear();
+        int n = decoder.read(buffer);
+        if (n > 0) {
+            buffer.flip();
+            handler.consume(buffer, ioctrl);
+        }
+        if (decoder.isCompleted() && !ended) {
+            ended = true;
+            handler.end();
+        }
+    }
+
+    @Override
+    protected HttpRequest buildResult(HttpContext context) throws IOException {
+        if (begun && !ended) {
+            ended = true;
+            handler.end();
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            ((HttpEntityEnclosingRequest) request).setEntity(handler.getEntity());
+        }
+        context.setAttribute(EndpointHandler.REQUEST_BODY_HANDLER, handler);
+        completed = true;
+        return request;
+    }
+
+    @Override
+    protected void releaseResources() {
+        if (!completed) {
+            handler.release();
+        }
+        request = null;
+    }
+}
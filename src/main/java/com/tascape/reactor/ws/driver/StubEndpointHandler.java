@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+/**
+ * Endpoint handler that serves declarative stubs, see {@link StubLoader}. Stubs are replaced atomically, by swapping
+ * the response updater index, so reloading never drops connections or requests in flight.
+ *
+ * @author linsong wang
+ */
+public class StubEndpointHandler extends EndpointHandler {
+
+    private final String endpoint;
+
+    /**
+     * Handles all endpoints not handled by other handlers.
+     */
+    public StubEndpointHandler() {
+        this("*");
+    }
+
+    /**
+     * @param endpoint endpoint pattern, such as "/api/*"
+     */
+    public StubEndpointHandler(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
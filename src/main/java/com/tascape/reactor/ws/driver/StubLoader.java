@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.entity.ContentType;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads declarative stub definitions from *.json files of a directory, in file name order, and compiles them into
+ * {@link ResponseRule}s. Each file holds one stub, an array of stubs, or an object with a "stubs" array.
+ * <pre>
+ * {
+ *   "method": "GET",
+ *   "path": "/users/{id}",
+ *   "priority": 0,
+ *   "query": {"verbose": "true"},
+ *   "headers": {"Accept": "application/json"},
+ *   "response": {
+ *     "status": 200,
+ *     "headers": {"Cache-Control": "no-cache"},
+ *     "contentType": "application/json",
+ *     "body": "text body", or "json": {...}, or "bodyFile": "users/1.json"
+ *   },
+ *   "fault": {
+ *     "latency": {"fixed": 20}, or {"uniform": [10, 50]}, or {"logNormal": [20, 250]},
+ *     "errorRate": 0.01, "errorStatus": 503, "resetRate": 0.001, "bandwidth": 65536
+ *   }
+ * }
+ * </pre>
+ * Body files are relative to the stub directory, and are sent with zero-copy file transfer.
+ *
+ * @author linsong wang
+ */
+public class StubLoader implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(StubLoader.class);
+
+    private final Path dir;
+
+    private WatchService watchService;
+
+    private Thread watcher;
+
+    /**
+     * @param dir stub directory
+     */
+    public StubLoader(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Loads all stub definitions.
+     *
+     * @return response rules, in file name order, then in the order of each file
+     *
+     * @throws IOException in case of any IO issue, or invalid stub definition
+     */
+    public List<ResponseRule> load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.json")) {
+            ds.forEach(files::add);
+        }
+        files.sort(null);
+        List<ResponseRule> rules = new ArrayList<>();
+        for (Path file : files) {
+            String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+            try {
+                if (text.startsWith("[")) {
+                    this.parse(new JSONArray(text), rules);
+                } else {
+                    JSONObject json = new JSONObject(text);
+                    JSONArray stubs = json.optJSONArray("stubs");
+                    if (stubs != null) {
+                        this.parse(stubs, rules);
+                    } else {
+                        rules.add(this.parse(json));
+                    }
+                }
+            } catch (JSONException | IllegalArgumentException ex) {
+                throw new IOException("invalid stub definition in " + file + ", " + ex.getMessage(), ex);
+            }
+        }
+        LOG.info("loaded {} stubs from {} files in {}", rules.size(), files.size(), dir);
+        return rules;
+    }
+
+    /**
+     * Loads stubs into the handler, then reloads them on any change in the stub directory. Requests in flight are
+     * not affected by a reload; an invalid change keeps the previous stubs.
+     *
+     * @param handler handler to load stubs into
+     *
+     * @throws IOException if stubs cannot be loaded, or the directory cannot be watched
+     */
+    public synchronized void watch(StubEndpointHandler handler) throws IOException {
+        handler.setResponseUpdaters(this.load());
+        if (watcher != null) {
+            return;
+        }
+        watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+        WatchService ws = watchService;
+        watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = ws.take();
+                    // let editors finish writing, and coalesce events
+                    TimeUnit.MILLISECONDS.sleep(200);
+                    while (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                        key = ws.poll();
+                    }
+                    try {
+                        handler.setResponseUpdaters(this.load());
+                    } catch (IOException ex) {
+                        LOG.error("keep previous stubs, {}", ex.getMessage());
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                LOG.debug("stop watching {}", dir);
+            }
+        }, "ws-stub-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        LOG.info("watching stub directory {}", dir);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+            watcher = null;
+        }
+    }
+
+    private void parse(JSONArray stubs, List<ResponseRule> rules) {
+        for (int i = 0; i < stubs.length(); i++) {
+            rules.add(this.parse(stubs.getJSONObject(i)));
+        }
+    }
+
+    private ResponseRule parse(JSONObject stub) {
+        ResponseRule rule = new ResponseRule(stub.optString("method", null), stub.optString("path", null))
+            .withPriority(stub.optInt("priority", 0));
+        JSONObject query = stub.optJSONObject("query");
+        if (query != null) {
+            for (String name : query.keySet()) {
+                rule.withQuery(name, query.isNull(name) ? null : query.get(name).toString());
+            }
+        }
+        JSONObject headers = stub.optJSONObject("headers");
+        if (headers != null) {
+            for (String name : headers.keySet()) {
+                rule.withHeader(name, headers.isNull(name) ? null : headers.get(name).toString());
+            }
+        }
+
+        JSONObject response = stub.optJSONObject("response");
+        if (response == null) {
+            response = new JSONObject();
+        }
+        int status = response.optInt("status", 200);
+        String contentType = response.optString("contentType", null);
+        if (response.has("bodyFile")) {
+            Path file = dir.resolve(response.getString("bodyFile"));
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalArgumentException("body file not found " + file);
+            }
+            rule.withResponse(status, StaticResponse.ofFile(file, contentType == null
+                ? ContentType.APPLICATION_OCTET_STREAM : ContentType.parse(contentType)));
+        } else if (response.has("json")) {
+            rule.withResponse(status, response.get("json").toString(), contentType == null
+                ? ContentType.APPLICATION_JSON : ContentType.parse(contentType));
+        } else {
+            String body = response.optString("body", null);
+            rule.withResponse(status, body, contentType == null
+                ? ContentType.TEXT_PLAIN : ContentType.parse(contentType));
+        }
+        JSONObject responseHeaders = response.optJSONObject("headers");
+        if (responseHeaders != null) {
+            for (String name : responseHeaders.keySet()) {
+                rule.withResponseHeader(name, responseHeaders.get(name).toString());
+            }
+        }
+
+        JSONObject fault = stub.optJSONObject("fault");
+        if (fault != null) {
+            rule.withFault(parseFault(fault));
+        }
+        return rule;
+    }
+
+    private static FaultProfile parseFault(JSONObject fault) {
+        FaultProfile fp = new FaultProfile();
+        JSONObject latency = fault.optJSONObject("latency");
+        if (latency != null) {
+            Iterator<String> it = latency.keys();
+            String type = it.hasNext() ? it.next() : "";
+            switch (type) {
+                case "fixed":
+                    fp.withLatency(LatencyDistribution.fixed(latency.getLong(type)));
+                    break;
+                case "uniform":
+                    JSONArray u = latency.getJSONArray(type);
+                    fp.withLatency(LatencyDistribution.uniform(u.getLong(0), u.getLong(1)));
+                    break;
+                case "logNormal":
+                    JSONArray ln = latency.getJSONArray(type);
+                    fp.withLatency(LatencyDistribution.logNormal(ln.getDouble(0), ln.getDouble(1)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown latency distribution " + type);
+            }
+        }
+        if (fault.has("errorRate")) {
+            fp.withErrorRate(fault.getDouble("errorRate"), fault.optInt("errorStatus", 503));
+        }
+        if (fault.has("resetRate")) {
+            fp.withResetRate(fault.getDouble("resetRate"));
+        }
+        if (fault.has("bandwidth")) {
+            fp.withBandwidth(fault.getInt("bandwidth"));
+        }
+        return fp;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * Sends body of the wrapped entity a chunk at a time, pausing output between chunks, without blocking I/O reactor.
+ *
+ * @author linsong wang
+ */
+class ThrottledEntity extends HttpEntityWrapper implements HttpAsyncContentProducer {
+
+    private final int chunkSize;
+
+    private final long intervalNanos;
+
+    private final ScheduledExecutorService scheduler;
+
+    private InputStream content;
+
+    private ByteBuffer buffer;
+
+    private boolean eof;
+
+    private long nextChunk;
+
+    ThrottledEntity(HttpEntity wrapped, int chunkSize, long intervalMillis, ScheduledExecutorService scheduler) {
+        super(wrapped);
+        this.chunkSize = chunkSize;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+        if (content == null) {
+            content = wrappedEntity.getContent();
+            buffer = ByteBuffer.allocate(chunkSize);
+            buffer.flip();
+            nextChunk = System.nanoTime();
+        }
+        if (!buffer.hasRemaining()) {
+            long wait = nextChunk - System.nanoTime();
+            if (wait > 0) {
+                ioctrl.suspendOutput();
+                scheduler.schedule(ioctrl::requestOutput, wait, TimeUnit.NANOSECONDS);
+                return;
+            }
+            this.fill();
+            nextChunk = System.nanoTime() + intervalNanos;
+        }
+        if (buffer.hasRemaining()) {
+            encoder.write(buffer);
+        }
+        if (eof && !buffer.hasRemaining()) {
+            encoder.complete();
+            this.close();
+        }
+    }
+
+    private void fill() throws IOException {
+        buffer.clear();
+        byte[] array = buffer.array();
+        while (buffer.position() < chunkSize) {
+            int n = content.read(array, buffer.position(), chunkSize - buffer.position());
+            if (n < 0) {
+                eof = true;
+                break;
+            }
+            buffer.position(buffer.position() + n);
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (content != null) {
+            content.close();
+            content = null;
+        }
+    }
+}
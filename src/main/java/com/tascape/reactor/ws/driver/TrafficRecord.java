@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One recorded request and response pair.
+ *
+ * @author linsong wang
+ */
+public final class TrafficRecord {
+
+    private final long timestamp;
+
+    private final String method;
+
+    private final String uri;
+
+    private final List<Map.Entry<String, String>> requestHeaders;
+
+    private final byte[] requestBody;
+
+    private final int status;
+
+    private final List<Map.Entry<String, String>> responseHeaders;
+
+    private final byte[] responseBody;
+
+    /**
+     * @param timestamp       time of request in millisecond since epoch
+     * @param method          request method
+     * @param uri             request uri, path and query
+     * @param requestHeaders  request headers
+     * @param requestBody     request body, empty for none
+     * @param status          response status code
+     * @param responseHeaders response headers
+     * @param responseBody    response body, empty for none
+     */
+    public TrafficRecord(long timestamp, String method, String uri, List<Map.Entry<String, String>> requestHeaders,
+        byte[] requestBody, int status, List<Map.Entry<String, String>> responseHeaders, byte[] responseBody) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.uri = uri;
+        this.requestHeaders = Collections.unmodifiableList(requestHeaders);
+        this.requestBody = requestBody;
+        this.status = status;
+        this.responseHeaders = Collections.unmodifiableList(responseHeaders);
+        this.responseBody = responseBody;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public List<Map.Entry<String, String>> getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    /**
+     * @return request body, callers must not modify the array
+     */
+    public byte[] getRequestBody() {
+        return requestBody;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public List<Map.Entry<String, String>> getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * @return response body, callers must not modify the array
+     */
+    public byte[] getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + uri + " -> " + status + " (" + responseBody.length + " bytes)";
+    }
+}
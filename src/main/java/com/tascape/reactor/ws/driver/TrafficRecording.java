@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.apache.http.HttpHeaders;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only file of recorded traffic. Each record is a 4-byte length followed by the fields in binary, so records
+ * are appended with one write, and a record cut short by a crash is skipped on read.
+ *
+ * @author linsong wang
+ */
+public class TrafficRecording implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficRecording.class);
+
+    private static final int MAGIC = 0x57535231;
+
+    private static final Set<String> SKIPPED_HEADERS = new HashSet<>(Arrays.asList("connection", "keep-alive",
+        "transfer-encoding", "content-length", "date", "proxy-connection", "te", "trailer", "upgrade"));
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    /**
+     * Opens the file for appending, creating it if not exists.
+     *
+     * @param file recording file
+     *
+     * @throws IOException in case of any IO issue
+     */
+    public TrafficRecording(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            ByteBuffer magic = ByteBuffer.allocate(4).putInt(MAGIC);
+            magic.flip();
+            channel.write(magic);
+        }
+    }
+
+    /**
+     * Appends a record, thread-safe.
+     *
+     * @param record request and response
+     *
+     * @throws IOException in case of any IO issue
+     */
+    public void append(TrafficRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + record.getRequestBody().length
+            + record.getResponseBody().length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeLong(record.getTimestamp());
+        out.writeUTF(record.getMethod());
+        out.writeUTF(record.getUri());
+        writeHeaders(out, record.getRequestHeaders());
+        out.writeInt(record.getRequestBody().length);
+        out.write(record.getRequestBody());
+        out.writeShort(record.getStatus());
+        writeHeaders(out, record.getResponseHeaders());
+        out.writeInt(record.getResponseBody().length);
+        out.write(record.getResponseBody());
+        out.flush();
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        buf.putInt(0, buf.remaining() - 4);
+        synchronized (channel) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads all records of a recording file.
+     *
+     * @param file recording file
+     *
+     * @return records, in recording order
+     *
+     * @throws IOException in case of any IO issue, or if file is not a recording
+     */
+    public static List<TrafficRecord> read(Path file) throws IOException {
+        List<TrafficRecord> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a traffic recording " + file);
+            }
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                try {
+                    in.readFully(data);
+                } catch (EOFException ex) {
+                    LOG.warn("skip incomplete record at the end of {}", file);
+                    break;
+                }
+                records.add(readRecord(new DataInputStream(new ByteArrayInputStream(data))));
+            }
+        }
+        LOG.info("read {} records from {}", records.size(), file);
+        return records;
+    }
+
+    /**
+     * Compiles records into response rules for replay, matched by method, path and query parameters. Of records of
+     * the same request, the first one is replayed.
+     *
+     * @param records recorded traffic
+     *
+     * @return response rules
+     */
+    public static List<ResponseRule> toRules(List<TrafficRecord> records) {
+        Set<String> seen = new HashSet<>();
+        List<ResponseRule> rules = new ArrayList<>();
+        for (TrafficRecord r : records) {
+            if (!seen.add(r.getMethod() + " " + r.getUri())) {
+                continue;
+            }
+            URI uri;
+            try {
+                uri = new URI(r.getUri());
+            } catch (URISyntaxException ex) {
+                LOG.warn("skip record of invalid uri {}", r.getUri());
+                continue;
+            }
+            ResponseRule rule = new ResponseRule(r.getMethod(), uri.getRawPath());
+            List<NameValuePair> params = URLEncodedUtils.parse(uri, StandardCharsets.UTF_8);
+            params.forEach(nv -> rule.withQuery(nv.getName(), nv.getValue()));
+            // more specific rules of the same path first
+            rule.withPriority(params.size());
+
+            ContentType contentType = ContentType.DEFAULT_BINARY;
+            for (Map.Entry<String, String> h : r.getResponseHeaders()) {
+                if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(h.getKey())) {
+                    contentType = ContentType.parse(h.getValue());
+                } else {
+                    rule.withResponseHeader(h.getKey(), h.getValue());
+                }
+            }
+            rule.withResponse(r.getStatus(), r.getResponseBody().length == 0 ? null
+                : StaticResponse.of(r.getResponseBody(), contentType));
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    /**
+     * @param name header name
+     *
+     * @return true if the header is hop-by-hop, or is set by transport, and is not recorded or replayed
+     */
+    static boolean isSkipped(String name) {
+        return SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT));
+    }
+
+    private static void writeHeaders(DataOutputStream out, List<Map.Entry<String, String>> headers)
+        throws IOException {
+        out.writeShort(headers.size());
+        for (Map.Entry<String, String> h : headers) {
+            out.writeUTF(h.getKey());
+            out.writeUTF(h.getValue());
+        }
+    }
+
+    private static List<Map.Entry<String, String>> readHeaders(DataInputStream in) throws IOException {
+        int n = in.readUnsignedShort();
+        List<Map.Entry<String, String>> headers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            headers.add(new AbstractMap.SimpleImmutableEntry<>(in.readUTF(), in.readUTF()));
+        }
+        return headers;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static TrafficRecord readRecord(DataInputStream in) throws IOException {
+        long timestamp = in.readLong();
+        String method = in.readUTF();
+        String uri = in.readUTF();
+        List<Map.Entry<String, String>> requestHeaders = readHeaders(in);
+        byte[] requestBody = readBytes(in);
+        int status = in.readUnsignedShort();
+        List<Map.Entry<String, String>> responseHeaders = readHeaders(in);
+        byte[] responseBody = readBytes(in);
+        return new TrafficRecord(timestamp, method, uri, requestHeaders, requestBody, status, responseHeaders,
+            responseBody);
+    }
+}
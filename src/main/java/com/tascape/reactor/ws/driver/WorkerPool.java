@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.driver;
+
+import com.tascape.reactor.SystemConfiguration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Worker pool that runs blocking endpoint handlers off I/O reactor threads. The pool is bounded, both in threads and
+ * in queued tasks, and rejects tasks beyond that, see {@link EndpointHandler#getExecutor()}.
+ * <p>
+ * With reactor.driver.ws.GWS_WORKER_VIRTUAL set to true, and on a JVM with virtual threads, each task runs on a new
+ * virtual thread instead, with at most GWS_WORKER_THREADS + GWS_WORKER_QUEUE tasks in flight.
+ *
+ * @author linsong wang
+ */
+public final class WorkerPool implements Executor {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerPool.class);
+
+    /**
+     * Max number of worker threads, default is 200
+     */
+    public static final String SYSPROP_WORKER_THREADS = "reactor.driver.ws.GWS_WORKER_THREADS";
+
+    /**
+     * Max number of tasks waiting for a worker thread, default is 1000
+     */
+    public static final String SYSPROP_WORKER_QUEUE = "reactor.driver.ws.GWS_WORKER_QUEUE";
+
+    /**
+     * Uses virtual threads if available, default is false
+     */
+    public static final String SYSPROP_WORKER_VIRTUAL = "reactor.driver.ws.GWS_WORKER_VIRTUAL";
+
+    private static volatile WorkerPool defaultPool;
+
+    private final ExecutorService executor;
+
+    private final int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Gets the pool shared by all endpoint handlers, configured by system properties, created on first use.
+     *
+     * @return shared worker pool
+     */
+    public static WorkerPool getDefault() {
+        WorkerPool pool = defaultPool;
+        if (pool == null) {
+            synchronized (WorkerPool.class) {
+                pool = defaultPool;
+                if (pool == null) {
+                    SystemConfiguration sysConfig = SystemConfiguration.getInstance();
+                    pool = new WorkerPool(sysConfig.getIntProperty(SYSPROP_WORKER_THREADS, 200),
+                        sysConfig.getIntProperty(SYSPROP_WORKER_QUEUE, 1000),
+                        Boolean.parseBoolean(sysConfig.getProperty(SYSPROP_WORKER_VIRTUAL, "false")));
+                    defaultPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @param threads max number of worker threads
+     * @param queue   max number of tasks waiting for a worker thread
+     * @param virtual true to use virtual threads if available
+     */
+    public WorkerPool(int threads, int queue, boolean virtual) {
+        this.maxInFlight = threads + queue;
+        ExecutorService vt = virtual ? newVirtualThreadExecutor() : null;
+        if (vt != null) {
+            LOG.info("worker pool of virtual threads, max {} in flight", maxInFlight);
+            this.executor = vt;
+        } else {
+            AtomicInteger seq = new AtomicInteger();
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+                    Thread t = new Thread(r, "ws-worker-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            tpe.allowCoreThreadTimeOut(true);
+            LOG.info("worker pool of {} threads, {} queued", threads, queue);
+            this.executor = tpe;
+        }
+    }
+
+    /**
+     * @param task task to run
+     *
+     * @throws RejectedExecutionException if the pool is full
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("worker pool is full");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return number of tasks running or queued
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of tasks rejected so far
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            LOG.warn("virtual threads are not available on this JVM, use platform threads");
+            return null;
+        }
+    }
+}
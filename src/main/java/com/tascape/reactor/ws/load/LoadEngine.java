@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.load;
+
+import com.tascape.reactor.ws.comm.WebServiceCommunication;
+import com.tascape.reactor.ws.driver.EndpointHandler;
+import com.tascape.reactor.ws.driver.GenericWebService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates load through a {@link WebServiceCommunication}. Each virtual user, or each worker in open model, runs the
+ * scenario steps in order with a session of its own, so that all users share the connection pool but not cookies.
+ * <pre>
+ * LoadReport report = new LoadEngine(wsc, LoadProfile.open(500).rampUp(10, TimeUnit.SECONDS))
+ *     .addStep("GET /users", session -&gt; session.get("/users"))
+ *     .run();
+ * </pre>
+ *
+ * @author linsong wang
+ */
+public class LoadEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadEngine.class);
+
+    private final WebServiceCommunication wsc;
+
+    private final LoadProfile profile;
+
+    private final List<String> names = new ArrayList<>();
+
+    private final List<LoadStep> steps = new ArrayList<>();
+
+    private final Map<String, LoadStats> stats = new LinkedHashMap<>();
+
+    private final Map<String, LoadStats> steadyStats = new LinkedHashMap<>();
+
+    private LoadStats[] allByStep;
+
+    private LoadStats[] steadyByStep;
+
+    private long steadyStart;
+
+    private long steadyEnd;
+
+    /**
+     * @param wsc     connected communication, whose connection pool is shared by all virtual users
+     * @param profile load profile
+     */
+    public LoadEngine(WebServiceCommunication wsc, LoadProfile profile) {
+        this.wsc = wsc;
+        this.profile = profile;
+    }
+
+    /**
+     * Adds a step to the scenario. Steps of the same name share statistics.
+     *
+     * @param name name in report, such as "GET /users"
+     * @param step the step
+     *
+     * @return this engine
+     */
+    public LoadEngine addStep(String name, LoadStep step) {
+        this.names.add(name);
+        this.steps.add(step);
+        return this;
+    }
+
+    /**
+     * Runs the load and waits for it to finish.
+     *
+     * @return report of the run
+     *
+     * @throws InterruptedException if interrupted
+     */
+    public synchronized LoadReport run() throws InterruptedException {
+        if (steps.isEmpty()) {
+            throw new IllegalStateException("no step to run");
+        }
+        stats.clear();
+        steadyStats.clear();
+        allByStep = new LoadStats[steps.size()];
+        steadyByStep = new LoadStats[steps.size()];
+        for (int i = 0; i < steps.size(); i++) {
+            allByStep[i] = stats.computeIfAbsent(names.get(i), LoadStats::new);
+            steadyByStep[i] = steadyStats.computeIfAbsent(names.get(i), LoadStats::new);
+        }
+
+        LOG.info("Start load {}", profile);
+        long start = System.nanoTime();
+        steadyStart = start + TimeUnit.MILLISECONDS.toNanos(profile.getRampUpMillis());
+        steadyEnd = steadyStart + TimeUnit.MILLISECONDS.toNanos(profile.getSteadyMillis());
+        if (profile.getModel() == LoadProfile.Model.CLOSED) {
+            this.runClosed(start);
+        } else {
+            this.runOpen(start);
+        }
+        LoadReport report = new LoadReport(profile, stats, steadyStats,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        LOG.info("Load finished\n{}", report);
+        return report;
+    }
+
+    private void runClosed(long start) throws InterruptedException {
+        int users = profile.getUsers();
+        long rampUp = TimeUnit.MILLISECONDS.toNanos(profile.getRampUpMillis());
+        long rampDown = TimeUnit.MILLISECONDS.toNanos(profile.getRampDownMillis());
+        long pacing = TimeUnit.MILLISECONDS.toNanos(profile.getPacingMillis());
+        long thinkTime = profile.getThinkTimeMillis();
+        List<Thread> threads = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            long join = start + rampUp * i / users;
+            long leave = steadyEnd + rampDown * (users - i) / users;
+            Thread t = new Thread(() -> {
+                WebServiceCommunication session = wsc.newSession();
+                long scheduled = join;
+                parkUntil(scheduled);
+                while (scheduled < leave && !Thread.currentThread().isInterrupted()) {
+                    this.iterate(session, scheduled);
+                    if (pacing > 0) {
+                        scheduled += pacing;
+                        parkUntil(Math.min(scheduled, leave));
+                    } else {
+                        if (thinkTime > 0) {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkTime));
+                        }
+                        scheduled = System.nanoTime();
+                    }
+                }
+            }, "vu-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        long deadline = steadyEnd + rampDown + TimeUnit.MILLISECONDS.toNanos(profile.getDrainTimeoutMillis());
+        for (Thread t : threads) {
+            TimeUnit.NANOSECONDS.timedJoin(t, Math.max(1, deadline - System.nanoTime()));
+            if (t.isAlive()) {
+                LOG.warn("{} is still running after drain timeout", t.getName());
+                t.interrupt();
+            }
+        }
+    }
+
+    private void runOpen(long start) throws InterruptedException {
+        AtomicInteger seq = new AtomicInteger();
+        int max = profile.getMaxConcurrency();
+        ExecutorService workers = new ThreadPoolExecutor(max, max, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(max), r -> {
+                Thread t = new Thread(r, "vu-" + seq.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+        ThreadLocal<WebServiceCommunication> sessions = ThreadLocal.withInitial(wsc::newSession);
+        try {
+            for (long n = 1;; n++) {
+                double offset = profile.arrivalSeconds(n);
+                if (offset < 0) {
+                    break;
+                }
+                long scheduled = start + (long) (offset * 1_000_000_000L);
+                parkUntil(scheduled);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                try {
+                    workers.execute(() -> this.iterate(sessions.get(), scheduled));
+                } catch (RejectedExecutionException ex) {
+                    this.drop(scheduled);
+                }
+            }
+        } finally {
+            workers.shutdown();
+            if (!workers.awaitTermination(profile.getDrainTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                LOG.warn("{} iterations dropped after drain timeout", workers.shutdownNow().size());
+            }
+        }
+    }
+
+    /**
+     * Runs all steps once. The first step is timed from the scheduled start, the others from their actual start.
+     */
+    private void iterate(WebServiceCommunication session, long scheduled) {
+        boolean steady = scheduled >= steadyStart && scheduled < steadyEnd;
+        long begin = scheduled;
+        for (int i = 0; i < steps.size(); i++) {
+            boolean error = false;
+            try {
+                steps.get(i).run(session);
+            } catch (Exception ex) {
+                LOG.debug("{} failed, {}", names.get(i), ex.getMessage());
+                error = true;
+            }
+            long end = System.nanoTime();
+            allByStep[i].record(end - begin, error);
+            if (steady) {
+                steadyByStep[i].record(end - begin, error);
+            }
+            if (error) {
+                return;
+            }
+            begin = end;
+        }
+    }
+
+    private void drop(long scheduled) {
+        allByStep[0].drop();
+        if (scheduled >= steadyStart && scheduled < steadyEnd) {
+            steadyByStep[0].drop();
+        }
+    }
+
+    private static void parkUntil(long nanoTime) {
+        for (long wait = nanoTime - System.nanoTime(); wait > 0; wait = nanoTime - System.nanoTime()) {
+            LockSupport.parkNanos(wait);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs a short load against a local {@link GenericWebService}.
+     *
+     * @param args [rate] [port], port 0 for an ephemeral port
+     *
+     * @throws Exception in case of any issue
+     */
+    public static void main(String[] args) throws Exception {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 200;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GenericWebService.XONSTANT_PORT;
+
+        GenericWebService gws = new GenericWebService(port);
+        gws.registerResponseSimulator(new EndpointHandler() {
+            @Override
+            public String getEndpoint() {
+                return "/echo";
+            }
+
+            @Override
+            public void handleGet(HttpRequest request, HttpResponse response) throws HttpException, IOException {
+                response.setEntity(new NStringEntity("{\"echo\":true}", ContentType.APPLICATION_JSON));
+            }
+        });
+        gws.startAsync().get(10, TimeUnit.SECONDS);
+
+        WebServiceCommunication wsc = new WebServiceCommunication("localhost", gws.getPort());
+        wsc.connect();
+        try {
+            LoadReport report = new LoadEngine(wsc, LoadProfile.open(rate)
+                .rampUp(5, TimeUnit.SECONDS)
+                .steady(20, TimeUnit.SECONDS)
+                .rampDown(5, TimeUnit.SECONDS))
+                .addStep("GET /echo", session -> session.get("/echo"))
+                .run();
+            LOG.info("{}", report.toJson().toString(2));
+        } finally {
+            wsc.disconnect();
+            gws.stop();
+        }
+    }
+}
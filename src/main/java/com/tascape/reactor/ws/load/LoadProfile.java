@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.load;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shape of load over time, with ramp-up, steady-state and ramp-down phases.
+ * <p>
+ * In closed model, a fixed number of virtual users loop over the scenario. Users join evenly during ramp-up, and
+ * leave evenly during ramp-down. With pacing, iterations of a user are scheduled at fixed intervals, and latency of
+ * the first step of an iteration is measured from its scheduled start, so that a slow server is not hidden by users
+ * waiting for it (coordinated omission).
+ * <p>
+ * In open model, iterations arrive at a target rate no matter how fast the server responds. The rate grows linearly
+ * during ramp-up and shrinks linearly during ramp-down. Latency of the first step is measured from the scheduled
+ * arrival, including any wait for a free worker.
+ *
+ * @author linsong wang
+ */
+public final class LoadProfile {
+
+    public enum Model {
+        CLOSED, OPEN,
+    }
+
+    private final Model model;
+
+    private final int users;
+
+    private final double rate;
+
+    private long rampUpMillis;
+
+    private long steadyMillis = 60000;
+
+    private long rampDownMillis;
+
+    private long pacingMillis;
+
+    private long thinkTimeMillis;
+
+    private int maxConcurrency = 200;
+
+    private long drainTimeoutMillis = 30000;
+
+    /**
+     * Creates a closed model profile.
+     *
+     * @param users number of virtual users
+     *
+     * @return new profile
+     */
+    public static LoadProfile closed(int users) {
+        if (users <= 0) {
+            throw new IllegalArgumentException("number of users must be positive");
+        }
+        return new LoadProfile(Model.CLOSED, users, 0);
+    }
+
+    /**
+     * Creates an open model profile.
+     *
+     * @param iterationsPerSecond target arrival rate in steady state
+     *
+     * @return new profile
+     */
+    public static LoadProfile open(double iterationsPerSecond) {
+        if (!(iterationsPerSecond > 0)) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        return new LoadProfile(Model.OPEN, 0, iterationsPerSecond);
+    }
+
+    private LoadProfile(Model model, int users, double rate) {
+        this.model = model;
+        this.users = users;
+        this.rate = rate;
+    }
+
+    public LoadProfile rampUp(long duration, TimeUnit unit) {
+        this.rampUpMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    public LoadProfile steady(long duration, TimeUnit unit) {
+        this.steadyMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    public LoadProfile rampDown(long duration, TimeUnit unit) {
+        this.rampDownMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Sets fixed interval between iteration starts of a virtual user, closed model only.
+     *
+     * @param interval interval, 0 to start next iteration right after previous one
+     * @param unit     time unit
+     *
+     * @return this profile
+     */
+    public LoadProfile pacing(long interval, TimeUnit unit) {
+        this.pacingMillis = unit.toMillis(interval);
+        return this;
+    }
+
+    /**
+     * Sets pause between iterations of a virtual user, closed model without pacing only.
+     *
+     * @param duration think time
+     * @param unit     time unit
+     *
+     * @return this profile
+     */
+    public LoadProfile thinkTime(long duration, TimeUnit unit) {
+        this.thinkTimeMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Sets max number of iterations in flight, open model only. Arrivals beyond it wait for a free worker, up to the
+     * same number again. Further arrivals are dropped, and counted as dropped by the first step.
+     *
+     * @param maxConcurrency number of worker threads
+     *
+     * @return this profile
+     */
+    public LoadProfile maxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * Sets how long to wait for iterations still in flight after ramp-down.
+     *
+     * @param timeout timeout
+     * @param unit    time unit
+     *
+     * @return this profile
+     */
+    public LoadProfile drainTimeout(long timeout, TimeUnit unit) {
+        this.drainTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    public Model getModel() {
+        return model;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public long getRampUpMillis() {
+        return rampUpMillis;
+    }
+
+    public long getSteadyMillis() {
+        return steadyMillis;
+    }
+
+    public long getRampDownMillis() {
+        return rampDownMillis;
+    }
+
+    public long getPacingMillis() {
+        return pacingMillis;
+    }
+
+    public long getThinkTimeMillis() {
+        return thinkTimeMillis;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    /**
+     * Gets scheduled time of an arrival in open model.
+     *
+     * @param n sequence number of arrival, starting from 1
+     *
+     * @return offset from load start in second, or -1 if after ramp-down
+     */
+    double arrivalSeconds(long n) {
+        double u = rampUpMillis / 1000.0;
+        double s = steadyMillis / 1000.0;
+        double d = rampDownMillis / 1000.0;
+        double n1 = rate * u / 2;
+        double n2 = n1 + rate * s;
+        double n3 = n2 + rate * d / 2;
+        if (n <= n1) {
+            return Math.sqrt(2 * n * u / rate);
+        }
+        if (n <= n2) {
+            return u + (n - n1) / rate;
+        }
+        if (n <= n3) {
+            double m = n - n2;
+            return u + s + d - Math.sqrt(Math.max(0, d * d - 2 * d * m / rate));
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        String load = model == Model.CLOSED ? users + " users" : rate + " iterations/s";
+        return String.format("%s %s, ramp-up %d ms, steady %d ms, ramp-down %d ms", model, load, rampUpMillis,
+            steadyMillis, rampDownMillis);
+    }
+}
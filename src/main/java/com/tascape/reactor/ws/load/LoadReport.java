@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.load;
+
+import java.util.Collections;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Result of a load run, with throughput, error rate and latency percentiles of each step, for the whole run and for
+ * steady state only.
+ *
+ * @author linsong wang
+ */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final LoadProfile profile;
+
+    private final Map<String, LoadStats> stats;
+
+    private final Map<String, LoadStats> steadyStats;
+
+    private final long elapsedMillis;
+
+    LoadReport(LoadProfile profile, Map<String, LoadStats> stats, Map<String, LoadStats> steadyStats,
+        long elapsedMillis) {
+        this.profile = profile;
+        this.stats = Collections.unmodifiableMap(stats);
+        this.steadyStats = Collections.unmodifiableMap(steadyStats);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public LoadProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return statistics of the whole run, by step name
+     */
+    public Map<String, LoadStats> getStats() {
+        return stats;
+    }
+
+    /**
+     * @return statistics of iterations scheduled in steady state, by step name
+     */
+    public Map<String, LoadStats> getSteadyStats() {
+        return steadyStats;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @param name step name
+     *
+     * @return executions per second in steady state
+     */
+    public double getSteadyThroughput(String name) {
+        LoadStats s = steadyStats.get(name);
+        return s == null || profile.getSteadyMillis() == 0 ? 0 : s.getCount() * 1000.0 / profile.getSteadyMillis();
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject()
+            .put("profile", profile.toString())
+            .put("elapsed_ms", elapsedMillis);
+        JSONArray steps = new JSONArray();
+        stats.forEach((name, all) -> {
+            JSONObject step = new JSONObject()
+                .put("name", name)
+                .put("all", toJson(all, elapsedMillis));
+            LoadStats s = steadyStats.get(name);
+            if (s != null) {
+                step.put("steady", toJson(s, profile.getSteadyMillis()));
+            }
+            steps.put(step);
+        });
+        return json.put("steps", steps);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(profile.toString()).append(", elapsed ").append(elapsedMillis)
+            .append(" ms\n");
+        sb.append(String.format("%-32s %10s %8s %8s %10s %9s %9s %9s %9s %9s%n", "step (steady state)", "count",
+            "errors", "dropped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        steadyStats.forEach((name, s) -> {
+            sb.append(String.format("%-32s %10d %7.2f%% %8d %10.1f", name, s.getCount(), s.getErrorRate() * 100,
+                s.getDropped(), this.getSteadyThroughput(name)));
+            for (double p : PERCENTILES) {
+                sb.append(String.format(" %9.2f", s.getLatencyMillis(p)));
+            }
+            sb.append(String.format(" %9.2f%n", s.getLatencyMillis(100)));
+        });
+        return sb.toString();
+    }
+
+    private static JSONObject toJson(LoadStats s, long durationMillis) {
+        JSONObject json = new JSONObject()
+            .put("count", s.getCount())
+            .put("errors", s.getErrors())
+            .put("error_rate", s.getErrorRate())
+            .put("dropped", s.getDropped())
+            .put("throughput", durationMillis == 0 ? 0 : s.getCount() * 1000.0 / durationMillis);
+        JSONObject latency = new JSONObject();
+        for (double p : PERCENTILES) {
+            latency.put("p" + (p == (long) p ? Long.toString((long) p) : Double.toString(p)), s.getLatencyMillis(p));
+        }
+        latency.put("max", s.getLatencyMillis(100));
+        return json.put("latency_ms", latency);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.load;
+
+import com.tascape.reactor.ws.comm.LatencyHistogram;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics of one step, thread-safe.
+ *
+ * @author linsong wang
+ */
+public class LoadStats {
+
+    private final String name;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    LoadStats(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos, boolean error) {
+        histogram.record(nanos);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    void drop() {
+        dropped.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of executions, including failed ones
+     */
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return number of arrivals dropped without execution, since no worker is free and the queue is full, open model
+     *         only
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return ratio of failed executions, 0 if nothing is executed
+     */
+    public double getErrorRate() {
+        long count = this.getCount();
+        return count == 0 ? 0 : (double) this.getErrors() / count;
+    }
+
+    /**
+     * @param percentile percentile, between 0 and 100
+     *
+     * @return latency at the percentile in millisecond, of all executions
+     */
+    public double getLatencyMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return latency histogram in nanosecond, of all executions
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.load;
+
+import com.tascape.reactor.ws.comm.WebServiceCommunication;
+
+/**
+ * One step of the scenario of a virtual user, usually one request to one endpoint. Any exception fails the step, and
+ * the rest of the current iteration is skipped.
+ *
+ * @author linsong wang
+ */
+@FunctionalInterface
+public interface LoadStep {
+
+    /**
+     * @param session session of the virtual user, with its own cookies and headers
+     *
+     * @throws Exception in case of any issue, counted as error
+     */
+    void run(WebServiceCommunication session) throws Exception;
+}
@@ -17,6 +17,10 @@
 package com.tascape.reactor.ws.task;
 
 import com.tascape.reactor.ws.driver.WebService;
+import com.tascape.reactor.ws.load.LoadEngine;
+import com.tascape.reactor.ws.load.LoadProfile;
+import com.tascape.reactor.ws.load.LoadReport;
+import com.tascape.reactor.ws.load.LoadStep;
 
 /**
  *
@@ -40,4 +44,20 @@ public interface WebServiceCase {
     default void runManually(WebService ws, int timeoutMinutes) throws Exception {
         ws.interactManually(timeoutMinutes);
     }
+
+    /**
+     * Runs load of one step against the web service, through its communication.
+     *
+     * @param ws      the WebService instance used
+     * @param profile load profile
+     * @param name    step name in report, such as "GET /users"
+     * @param step    the step each virtual user runs repeatedly
+     *
+     * @return report with throughput, error rate and latency percentiles
+     *
+     * @throws Exception if case of error
+     */
+    default LoadReport runLoad(WebService ws, LoadProfile profile, String name, LoadStep step) throws Exception {
+        return new LoadEngine(ws.getWebServiceCommunication(), profile).addStep(name, step).run();
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015 - present Nebula Bay.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tascape.reactor.ws.comm;
+
+import com.tascape.reactor.ws.comm.JsonTokenReader.Token;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that {@link StreamingJsonCodec} accepts and rejects the same content as org.json.
+ *
+ * @author linsong wang
+ */
+public class StreamingJsonCodecTest {
+
+    private final JsonCodec codec = StreamingJsonCodec.INSTANCE;
+
+    @Test
+    public void testReadObject() throws IOException {
+        String json = "{\"a\":1,\"b\":[1,2.5,-3e2,{\"c\":null}],"
+            + "\"d\":\"x\\u0041\\\"\\\\\\/\\b\\f\\n\\r\\t\",\"e\":true,\"f\":false,\"g\":{}}";
+        Assert.assertTrue(new JSONObject(json).similar(codec.readObject(new StringReader(json))));
+    }
+
+    @Test
+    public void testReadArray() throws IOException {
+        String json = " [ [ ] , { } , \"\u00e9\" , 0 , -0.5 , 1E+2 ] ";
+        Assert.assertTrue(new JSONArray(json).similar(codec.readArray(new StringReader(json))));
+    }
+
+    @Test
+    public void testMismatchedCloser() {
+        assertObjectRejected("{]");
+        assertArrayRejected("[}");
+        assertArrayRejected("[1]]");
+    }
+
+    @Test
+    public void testDuplicateKey() {
+        assertObjectRejected("{\"a\":1,\"a\":2}");
+        assertObjectRejected("{\"a\":null,\"a\":null}");
+    }
+
+    @Test
+    public void testTrailingContent() {
+        assertObjectRejected("{} x");
+        assertObjectRejected("{}{}");
+        assertArrayRejected("[] []");
+    }
+
+    @Test
+    public void testMissingOrExtraSeparator() {
+        assertArrayRejected("[1 2]");
+        assertObjectRejected("{\"a\" 1}");
+        assertObjectRejected("{\"a\":1,}");
+        assertArrayRejected("[1,]");
+        assertArrayRejected("[,1]");
+        assertObjectRejected("{,}");
+        assertObjectRejected("{\"a\":}");
+        assertArrayRejected("[\"a\":1]");
+        assertObjectRejected("{1:2}");
+    }
+
+    @Test
+    public void testUnterminated() {
+        assertArrayRejected("[");
+        assertObjectRejected("{\"a\":1");
+        assertObjectRejected("{\"a\":\"b");
+        assertObjectRejected("");
+    }
+
+    @Test
+    public void testInvalidNumberOrLiteral() {
+        assertArrayRejected("[01]");
+        assertArrayRejected("[1.]");
+        assertArrayRejected("[-]");
+        assertArrayRejected("[tru]");
+        assertArrayRejected("[nul]");
+    }
+
+    @Test
+    public void testInvalidEscape() {
+        assertArrayRejected("[\"\\a\"]");
+        assertArrayRejected("[\"\\x41\"]");
+        assertArrayRejected("[\"\\u00g1\"]");
+    }
+
+    @Test
+    public void testControlCharacter() {
+        assertArrayRejected("[\"a\nb\"]");
+        assertArrayRejected("[\"a\tb\"]");
+        assertArrayRejected("[\"\u0000\"]");
+    }
+
+    @Test
+    public void testWrongType() {
+        assertObjectRejected("[]");
+        assertArrayRejected("{}");
+    }
+
+    @Test
+    public void testTokenStream() throws IOException {
+        JsonTokenReader jtr = new JsonTokenReader(new StringReader("{\"a\":[1]} 2"));
+        List<Token> tokens = new ArrayList<>();
+        for (Token t = jtr.next(); t != null; t = jtr.next()) {
+            tokens.add(t);
+        }
+        Assert.assertEquals("[START_OBJECT, FIELD_NAME, START_ARRAY, NUMBER, END_ARRAY, END_OBJECT, NUMBER]",
+            tokens.toString());
+    }
+
+    private void assertObjectRejected(String json) {
+        try {
+            codec.readObject(new StringReader(json));
+            Assert.fail("accepted " + json);
+        } catch (JSONException ex) {
+            // expected
+        } catch (IOException ex) {
+            Assert.fail("IOException instead of JSONException for " + json + ", " + ex);
+        }
+    }
+
+    private void assertArrayRejected(String json) {
+        try {
+            codec.readArray(new StringReader(json));
+            Assert.fail("accepted " + json);
+        } catch (JSONException ex) {
+            // expected
+        } catch (IOException ex) {
+            Assert.fail("IOException instead of JSONException for " + json + ", " + ex);
+        }
+    }
+}